@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class AdaptiveInterval {
+
+    //
+    // Speed bands in m/s with the interval multiplier used in each band. The
+    // band only changes when the speed is clearly past a threshold and stays
+    // there for a few consecutive fixes, so noisy speeds do not cause the
+    // providers to re-register all the time.
+    //
+
+    private static final double[] THRESHOLDS = { 1, 8, 25 };
+    private static final double[] FACTORS = { 4, 1, 0.5, 0.25 };
+
+    private static final double HYSTERESIS = 0.2;
+    private static final int CONFIRMATIONS = 2;
+
+    private final long basePeriod;
+
+    private int band = 1;
+    private int candidate = 1;
+    private int confirmations;
+
+    public AdaptiveInterval(long basePeriod) {
+        this.basePeriod = basePeriod;
+    }
+
+    public long getPeriod() {
+        return (long) (basePeriod * FACTORS[band]);
+    }
+
+    public int getBand() {
+        return band;
+    }
+
+    private int findBand(double speed) {
+        int result = band;
+        while (result < THRESHOLDS.length && speed > THRESHOLDS[result] * (1 + HYSTERESIS)) {
+            result += 1;
+        }
+        while (result > 0 && speed < THRESHOLDS[result - 1] * (1 - HYSTERESIS)) {
+            result -= 1;
+        }
+        return result;
+    }
+
+    public boolean update(double speed) {
+        int next = findBand(speed);
+        if (next == band) {
+            confirmations = 0;
+            return false;
+        }
+        if (next != candidate) {
+            candidate = next;
+            confirmations = 0;
+        }
+        confirmations += 1;
+        if (confirmations >= CONFIRMATIONS) {
+            band = next;
+            confirmations = 0;
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+public class BatteryMonitor extends BroadcastReceiver {
+
+    private static final String TAG = BatteryMonitor.class.getSimpleName();
+
+    private static final long REFRESH_INTERVAL = 60 * 1000;
+
+    private static volatile double level;
+    private static volatile boolean charging;
+    private static volatile boolean monitoring;
+    private static long refreshTime;
+
+    private Context context;
+
+    public BatteryMonitor(Context context) {
+        this.context = context;
+    }
+
+    public static double getLevel(Context context) {
+        if (!monitoring) {
+            refresh(context);
+        }
+        return level;
+    }
+
+    public static boolean isCharging(Context context) {
+        if (!monitoring) {
+            refresh(context);
+        }
+        return charging;
+    }
+
+    private static synchronized void refresh(Context context) {
+        long now = SystemClock.elapsedRealtime();
+        if (refreshTime == 0 || now - refreshTime >= REFRESH_INTERVAL) {
+            refreshTime = now;
+            update(context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED)));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ECLAIR)
+    private static void update(Intent intent) {
+        if (intent != null && Build.VERSION.SDK_INT > Build.VERSION_CODES.ECLAIR) {
+            int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, 0);
+            int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 1);
+            BatteryMonitor.level = (level * 100.0) / scale;
+            BatteryMonitor.charging = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        }
+    }
+
+    public void start() {
+        update(context.registerReceiver(this, new IntentFilter(Intent.ACTION_BATTERY_CHANGED)));
+        monitoring = true;
+    }
+
+    public void stop() {
+        monitoring = false;
+        refreshTime = 0;
+        context.unregisterReceiver(this);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+            update(intent);
+            Log.i(TAG, "battery " + level + (charging ? " charging" : ""));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+public class BinaryFormatter {
+
+    public static final String CONTENT_TYPE = "application/octet-stream";
+
+    //
+    // Batch layout, all integers are varints and all per position values are
+    // zigzag encoded differences from the previous position (or from zero):
+    //
+    // version, device id length, device id (utf-8), position count,
+    // { time (s), latitude (1e-6 deg), longitude (1e-6 deg),
+    //   altitude (0.1 m), speed (0.1 kn), course (0.1 deg), battery (0.1 %) }
+    //
+    // All positions in a batch must share the device id of the first one.
+    //
+
+    public static final int VERSION = 1;
+
+    public static final double COORDINATE_SCALE = 1e6;
+    public static final double VALUE_SCALE = 10;
+
+    private byte[] buffer = new byte[1024];
+    private int length;
+
+    private long time;
+    private long latitude;
+    private long longitude;
+    private long altitude;
+    private long speed;
+    private long course;
+    private long battery;
+
+    public byte[] formatBatch(List<Position> positions) {
+        length = 0;
+        time = 0;
+        latitude = 0;
+        longitude = 0;
+        altitude = 0;
+        speed = 0;
+        course = 0;
+        battery = 0;
+
+        writeVarint(VERSION);
+
+        byte[] deviceId;
+        try {
+            String value = positions.isEmpty() ? null : positions.get(0).getDeviceId();
+            deviceId = value != null ? value.getBytes("UTF-8") : new byte[0];
+        } catch (UnsupportedEncodingException error) {
+            throw new AssertionError(error);
+        }
+        writeVarint(deviceId.length);
+        ensureCapacity(deviceId.length);
+        System.arraycopy(deviceId, 0, buffer, length, deviceId.length);
+        length += deviceId.length;
+
+        writeVarint(positions.size());
+        for (Position position : positions) {
+            time = writeDelta(time, position.getTime().getTime() / 1000);
+            latitude = writeDelta(latitude, Math.round(position.getLatitude() * COORDINATE_SCALE));
+            longitude = writeDelta(longitude, Math.round(position.getLongitude() * COORDINATE_SCALE));
+            altitude = writeDelta(altitude, Math.round(position.getAltitude() * VALUE_SCALE));
+            speed = writeDelta(speed, Math.round(position.getSpeed() * VALUE_SCALE));
+            course = writeDelta(course, Math.round(position.getCourse() * VALUE_SCALE));
+            battery = writeDelta(battery, Math.round(position.getBattery() * VALUE_SCALE));
+        }
+
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+
+    private long writeDelta(long previous, long value) {
+        long delta = value - previous;
+        writeVarint((delta << 1) ^ (delta >> 63));
+        return value;
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] expanded = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, expanded, 0, length);
+            buffer = expanded;
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class Compressor {
+
+    public static final String CONTENT_ENCODING = "gzip";
+
+    public static final int THRESHOLD = 1024;
+
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+
+    private static final AtomicLong bytesBefore = new AtomicLong();
+    private static final AtomicLong bytesAfter = new AtomicLong();
+
+    private static final ThreadLocal<Compressor> compressors = new ThreadLocal<Compressor>() {
+        @Override
+        protected Compressor initialValue() {
+            return new Compressor();
+        }
+    };
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private byte[] buffer = new byte[4096];
+
+    Compressor() {
+    }
+
+    public static long getBytesBefore() {
+        return bytesBefore.get();
+    }
+
+    public static long getBytesAfter() {
+        return bytesAfter.get();
+    }
+
+    public static byte[] compress(byte[] content) {
+        byte[] result = null;
+        if (content.length >= THRESHOLD) {
+            result = compressors.get().gzip(content);
+            if (result.length >= content.length) {
+                result = null;
+            }
+        }
+        bytesBefore.addAndGet(content.length);
+        bytesAfter.addAndGet(result != null ? result.length : content.length);
+        return result;
+    }
+
+    byte[] gzip(byte[] content) {
+        deflater.reset();
+        deflater.setInput(content);
+        deflater.finish();
+
+        int length = HEADER_SIZE;
+        ensureCapacity(length);
+        buffer[0] = 0x1f;
+        buffer[1] = (byte) 0x8b;
+        buffer[2] = Deflater.DEFLATED;
+        for (int i = 3; i < HEADER_SIZE - 1; i++) {
+            buffer[i] = 0;
+        }
+        buffer[HEADER_SIZE - 1] = (byte) 0xff;
+
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                ensureCapacity(length + 1);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        crc.reset();
+        crc.update(content, 0, content.length);
+        ensureCapacity(length + TRAILER_SIZE);
+        writeInt(length, (int) crc.getValue());
+        writeInt(length + 4, content.length);
+        length += TRAILER_SIZE;
+
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+
+    private void writeInt(int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            byte[] expanded = new byte[Math.max(buffer.length * 2, capacity)];
+            System.arraycopy(buffer, 0, expanded, 0, buffer.length);
+            buffer = expanded;
+        }
+    }
+
+}
@@ -15,26 +15,53 @@
  */
 package org.traccar.client;
 
-import android.content.ContentValues;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.os.AsyncTask;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class DatabaseHelper extends SQLiteOpenHelper {
+public class DatabaseHelper extends SQLiteOpenHelper implements PositionQueue {
 
     public static final int DATABASE_VERSION = 1;
     public static final String DATABASE_NAME = "traccar.db";
 
+    private static final String POSITION_COLUMNS =
+            "id, deviceId, time, latitude, longitude, altitude, speed, course, battery";
+
+    private static final int DELETE_CHUNK = 500;
+
+    public static final String EVICTION_OLDEST = "oldest";
+    public static final String EVICTION_THIN = "thin";
+    public static final String EVICTION_BUCKET = "bucket";
+
+    private static final int EVICTION_CHUNK = 500;
+    private static final int THIN_STEP = 2;
+    private static final long BUCKET_TIME = 60 * 1000;
+    private static final int BUCKET_MAX_PASS = 12;
+
+    private static final int SIMPLIFY_CHUNK = 500;
+
+    private static final WorkQueue workQueue = new WorkQueue("storage", 1);
+
+    public static WorkQueue getWorkQueue() {
+        return workQueue;
+    }
+
     public interface DatabaseHandler<T> {
         void onComplete(boolean success, T result);
     }
 
-    private static abstract class DatabaseAsyncTask<T> extends AsyncTask<Void, Void, T> {
+    static abstract class DatabaseAsyncTask<T> extends WorkQueue.Task<T> {
 
         private DatabaseHandler<T> handler;
         private RuntimeException error;
@@ -44,7 +71,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
 
         @Override
-        protected T doInBackground(Void... params) {
+        protected T doInBackground() {
             try {
                 return executeMethod();
             } catch (RuntimeException error) {
@@ -59,13 +86,47 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         protected void onPostExecute(T result) {
             handler.onComplete(error == null, result);
         }
+
+        public void execute() {
+            execute(workQueue);
+        }
     }
 
     private SQLiteDatabase db;
+    private SQLiteStatement insertStatement;
+
+    private final AtomicLong size = new AtomicLong();
+    private long selectedId;
+    private volatile long liveId;
 
+    private long maxRows;
+    private long maxBytes;
+    private String eviction = EVICTION_OLDEST;
+
+    private long evictionId;
+    private int evictionPass;
+    private long evictionIndex;
+    private boolean evictedInPass;
+    private boolean evictionExhausted;
+    private long lastBucket = -1;
+    private long evicted;
+
+    private TrackSimplifier simplifier;
+    private long[] simplifierIds;
+    private long simplifiedId;
+    private long simplified;
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
         db = getWritableDatabase();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            db.enableWriteAheadLogging();
+        }
+        insertStatement = db.compileStatement("INSERT INTO position (" +
+                "deviceId, time, latitude, longitude, altitude, speed, course, battery) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        size.set(DatabaseUtils.queryNumEntries(db, "position"));
     }
 
     @Override
@@ -89,17 +150,27 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     public void insertPosition(Position position) {
-        ContentValues values = new ContentValues();
-        values.put("deviceId", position.getDeviceId());
-        values.put("time", position.getTime().getTime());
-        values.put("latitude", position.getLatitude());
-        values.put("longitude", position.getLongitude());
-        values.put("altitude", position.getAltitude());
-        values.put("speed", position.getSpeed());
-        values.put("course", position.getCourse());
-        values.put("battery", position.getBattery());
+        synchronized (insertStatement) {
+            if (position.getDeviceId() != null) {
+                insertStatement.bindString(1, position.getDeviceId());
+            } else {
+                insertStatement.bindNull(1);
+            }
+            insertStatement.bindLong(2, position.getTime().getTime());
+            insertStatement.bindDouble(3, position.getLatitude());
+            insertStatement.bindDouble(4, position.getLongitude());
+            insertStatement.bindDouble(5, position.getAltitude());
+            insertStatement.bindDouble(6, position.getSpeed());
+            insertStatement.bindDouble(7, position.getCourse());
+            insertStatement.bindDouble(8, position.getBattery());
 
-        db.insertOrThrow("position", null, values);
+            long id = insertStatement.executeInsert();
+            if (id == -1) {
+                throw new SQLException();
+            }
+            position.setId(id);
+            size.incrementAndGet();
+        }
     }
 
     public void insertPositionAsync(final Position position, DatabaseHandler<Void> handler) {
@@ -112,24 +183,56 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }.execute();
     }
 
-    public Position selectPosition() {
+    @Override
+    public void insertPositions(List<Position> positions) {
+        db.beginTransaction();
+        try {
+            for (Position position : positions) {
+                insertPosition(position);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void insertPositionsAsync(final List<Position> positions, DatabaseHandler<Void> handler) {
+        new DatabaseAsyncTask<Void>(handler) {
+            @Override
+            protected Void executeMethod() {
+                insertPositions(positions);
+                return null;
+            }
+        }.execute();
+    }
+
+    private Position readPosition(Cursor cursor) {
         Position position = new Position();
 
-        Cursor cursor = db.rawQuery("SELECT * FROM position ORDER BY id LIMIT 1", null);
+        position.setId(cursor.getLong(0));
+        position.setDeviceId(cursor.getString(1));
+        position.setTime(new Date(cursor.getLong(2)));
+        position.setLatitude(cursor.getDouble(3));
+        position.setLongitude(cursor.getDouble(4));
+        position.setAltitude(cursor.getDouble(5));
+        position.setSpeed(cursor.getDouble(6));
+        position.setCourse(cursor.getDouble(7));
+        position.setBattery(cursor.getDouble(8));
+
+        return position;
+    }
+
+    public Position selectPosition() {
+        Position position;
+
+        Cursor cursor = db.rawQuery("SELECT " + POSITION_COLUMNS + " FROM position ORDER BY id LIMIT 1", null);
         try {
             if (cursor.getCount() > 0) {
 
                 cursor.moveToFirst();
 
-                position.setId(cursor.getLong(cursor.getColumnIndex("id")));
-                position.setDeviceId(cursor.getString(cursor.getColumnIndex("deviceId")));
-                position.setTime(new Date(cursor.getLong(cursor.getColumnIndex("time"))));
-                position.setLatitude(cursor.getDouble(cursor.getColumnIndex("latitude")));
-                position.setLongitude(cursor.getDouble(cursor.getColumnIndex("longitude")));
-                position.setAltitude(cursor.getDouble(cursor.getColumnIndex("altitude")));
-                position.setSpeed(cursor.getDouble(cursor.getColumnIndex("speed")));
-                position.setCourse(cursor.getDouble(cursor.getColumnIndex("course")));
-                position.setBattery(cursor.getDouble(cursor.getColumnIndex("battery")));
+                position = readPosition(cursor);
 
             } else {
                 return null;
@@ -150,10 +253,47 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }.execute();
     }
 
+    public List<Position> selectPositions(int limit) {
+        return selectPositions(0, limit);
+    }
+
+    @Override
+    public List<Position> selectPositions(long afterId, int limit) {
+        List<Position> positions = new ArrayList<Position>();
+
+        Cursor cursor = db.rawQuery(
+                "SELECT " + POSITION_COLUMNS + " FROM position WHERE id > ? ORDER BY id LIMIT " + limit,
+                new String[] { String.valueOf(afterId) });
+        try {
+            while (cursor.moveToNext()) {
+                positions.add(readPosition(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (!positions.isEmpty()) {
+            selectedId = Math.max(selectedId, positions.get(positions.size() - 1).getId());
+        }
+
+        return positions;
+    }
+
+    @Override
+    public void selectPositionsAsync(final long afterId, final int limit, DatabaseHandler<List<Position>> handler) {
+        new DatabaseAsyncTask<List<Position>>(handler) {
+            @Override
+            protected List<Position> executeMethod() {
+                return selectPositions(afterId, limit);
+            }
+        }.execute();
+    }
+
     public void deletePosition(long id) {
         if (db.delete("position", "id = ?", new String[] { String.valueOf(id) }) != 1) {
             throw new SQLException();
         }
+        size.decrementAndGet();
     }
 
     public void deletePositionAsync(final long id, DatabaseHandler<Void> handler) {
@@ -166,4 +306,275 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }.execute();
     }
 
+    private void deleteChunk(List<Long> ids) {
+        StringBuilder where = new StringBuilder("id IN (");
+        String[] args = new String[ids.size()];
+        for (int i = 0; i < args.length; i++) {
+            where.append(i > 0 ? ",?" : "?");
+            args[i] = String.valueOf(ids.get(i));
+        }
+        where.append(')');
+        // Rows may already be gone after eviction or simplification, so fewer deleted rows is not an error
+        size.addAndGet(-db.delete("position", where.toString(), args));
+    }
+
+    @Override
+    public void deletePositions(List<Long> ids) {
+        db.beginTransaction();
+        try {
+            for (int offset = 0; offset < ids.size(); offset += DELETE_CHUNK) {
+                deleteChunk(ids.subList(offset, Math.min(offset + DELETE_CHUNK, ids.size())));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void deletePositionsAsync(final List<Long> ids, DatabaseHandler<Void> handler) {
+        new DatabaseAsyncTask<Void>(handler) {
+            @Override
+            protected Void executeMethod() {
+                deletePositions(ids);
+                return null;
+            }
+        }.execute();
+    }
+
+    public int deletePositions(long fromId, long toId) {
+        int count = db.delete(
+                "position", "id BETWEEN ? AND ?", new String[] { String.valueOf(fromId), String.valueOf(toId) });
+        size.addAndGet(-count);
+        return count;
+    }
+
+    public void deletePositionsAsync(final long fromId, final long toId, DatabaseHandler<Integer> handler) {
+        new DatabaseAsyncTask<Integer>(handler) {
+            @Override
+            protected Integer executeMethod() {
+                return deletePositions(fromId, toId);
+            }
+        }.execute();
+    }
+
+    @Override
+    public long getSize() {
+        return size.get();
+    }
+
+    public void setLiveId(long liveId) {
+        this.liveId = liveId;
+    }
+
+    public long getBytes() {
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                - DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        return pages * db.getPageSize();
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public void setBacklogLimit(long maxRows, long maxBytes, String eviction) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.eviction = eviction;
+    }
+
+    //
+    // Eviction works on one chunk of rows per call, so the storage queue can
+    // run inserts and reads in between. Rows already handed out by
+    // selectPositions and the row sent by the live lane are never touched
+    // because they may be in flight.
+    //
+    // Thinning and bucketing sweep from the oldest row towards the newest one.
+    // Each new sweep halves the data again (thin) or doubles the bucket length
+    // (bucket). Once sweeping stops removing rows it falls back to dropping
+    // the oldest ones, so the limit always holds eventually.
+    //
+    // The byte limit is always enforced by dropping the oldest rows. Scattered
+    // deletes free hardly any whole pages, so the used size would barely move.
+    // The number of rows to drop is estimated from the average row size.
+    //
+
+    public boolean trimBacklog() {
+        long excessRows = maxRows > 0 ? size.get() - maxRows : 0;
+        long excessBytes = 0;
+        if (maxBytes > 0) {
+            long bytes = getBytes();
+            excessBytes = bytes - maxBytes;
+            if (excessBytes > 0) {
+                long rowBytes = Math.max(1, bytes / Math.max(1, size.get()));
+                excessRows = Math.max(excessRows, (excessBytes + rowBytes - 1) / rowBytes);
+            }
+        }
+        if (excessRows <= 0) {
+            resetEviction();
+            return false;
+        }
+
+        boolean sweep = !eviction.equals(EVICTION_OLDEST) && !evictionExhausted && excessBytes <= 0;
+        long fromId = Math.max(selectedId, sweep ? evictionId : 0);
+
+        List<Long> ids = new ArrayList<Long>();
+        List<Long> times = new ArrayList<Long>();
+        Cursor cursor = db.rawQuery(
+                "SELECT id, time FROM position WHERE id > ? ORDER BY id LIMIT " + EVICTION_CHUNK,
+                new String[] { String.valueOf(fromId) });
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+                times.add(cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (ids.isEmpty()) {
+            if (!sweep) {
+                return false;
+            }
+            if (evictedInPass || eviction.equals(EVICTION_BUCKET) && evictionPass < BUCKET_MAX_PASS) {
+                evictionPass += 1;
+            } else {
+                evictionExhausted = true;
+            }
+            evictionId = 0;
+            evictionIndex = 0;
+            evictedInPass = false;
+            lastBucket = -1;
+            return true;
+        }
+
+        List<Long> victims = new ArrayList<Long>();
+        if (!sweep) {
+            victims.addAll(ids.subList(0, (int) Math.min(excessRows, ids.size())));
+        } else if (eviction.equals(EVICTION_THIN)) {
+            for (long id : ids) {
+                if (evictionIndex++ % THIN_STEP != 0) {
+                    victims.add(id);
+                }
+            }
+        } else {
+            long bucketTime = BUCKET_TIME << Math.min(evictionPass, BUCKET_MAX_PASS);
+            for (int i = 0; i < ids.size(); i++) {
+                long bucket = times.get(i) / bucketTime;
+                if (bucket == lastBucket) {
+                    victims.add(ids.get(i));
+                } else {
+                    lastBucket = bucket;
+                }
+            }
+        }
+
+        if (sweep) {
+            evictionId = ids.get(ids.size() - 1);
+            evictedInPass |= !victims.isEmpty();
+        }
+
+        victims.remove(Long.valueOf(liveId));
+
+        if (!victims.isEmpty()) {
+            db.beginTransaction();
+            try {
+                deleteChunk(victims);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            evicted += victims.size();
+        }
+
+        return true;
+    }
+
+    private void resetEviction() {
+        evictionId = 0;
+        evictionPass = 0;
+        evictionIndex = 0;
+        evictedInPass = false;
+        evictionExhausted = false;
+        lastBucket = -1;
+    }
+
+    public void trimBacklogAsync(DatabaseHandler<Boolean> handler) {
+        new DatabaseAsyncTask<Boolean>(handler) {
+            @Override
+            protected Boolean executeMethod() {
+                return trimBacklog();
+            }
+        }.execute();
+    }
+
+    public long getSimplified() {
+        return simplified;
+    }
+
+    //
+    // Simplification walks the unsent rows in windows of SIMPLIFY_CHUNK. Each
+    // window starts at the last row of the previous one, so the track stays
+    // connected, and an incomplete window at the end is left for later when
+    // more positions have arrived.
+    //
+
+    public boolean simplifyBacklog(double tolerance) {
+        if (simplifier == null) {
+            simplifier = new TrackSimplifier(SIMPLIFY_CHUNK);
+            simplifierIds = new long[SIMPLIFY_CHUNK];
+        }
+        simplifier.clear();
+
+        long fromId = simplifiedId > selectedId ? simplifiedId : selectedId + 1;
+        Cursor cursor = db.rawQuery(
+                "SELECT id, time, latitude, longitude FROM position WHERE id >= ? ORDER BY id LIMIT " + SIMPLIFY_CHUNK,
+                new String[] { String.valueOf(fromId) });
+        try {
+            while (cursor.moveToNext()) {
+                simplifierIds[simplifier.getCount()] = cursor.getLong(0);
+                simplifier.add(cursor.getLong(1), cursor.getDouble(2), cursor.getDouble(3));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (!simplifier.isFull()) {
+            return false;
+        }
+
+        simplifier.simplify(tolerance);
+        List<Long> victims = new ArrayList<Long>();
+        for (int i = 0; i < SIMPLIFY_CHUNK; i++) {
+            if (!simplifier.isKept(i)) {
+                victims.add(simplifierIds[i]);
+            }
+        }
+
+        victims.remove(Long.valueOf(liveId));
+
+        if (!victims.isEmpty()) {
+            db.beginTransaction();
+            try {
+                deleteChunk(victims);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            simplified += victims.size();
+        }
+        simplifiedId = simplifierIds[SIMPLIFY_CHUNK - 1];
+
+        return true;
+    }
+
+    public void simplifyBacklogAsync(final double tolerance, DatabaseHandler<Boolean> handler) {
+        new DatabaseAsyncTask<Boolean>(handler) {
+            @Override
+            protected Boolean executeMethod() {
+                return simplifyBacklog(tolerance);
+            }
+        }.execute();
+    }
+
 }
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DatagramTransport {
+
+    //
+    // Positions are packed as '<id> <query>\n' lines into datagrams that fit
+    // a conservative path MTU, so no connection is set up at all. With
+    // acknowledgements enabled the server answers every datagram with the id
+    // of its last line, and a datagram is sent again when the answer does not
+    // arrive in time. A batch succeeds once all of its datagrams are
+    // acknowledged and fails as soon as one of them runs out of attempts.
+    // Without acknowledgements a batch succeeds once it has left the device.
+    //
+
+    private static final String TAG = DatagramTransport.class.getSimpleName();
+
+    public static final int MAX_PAYLOAD = 1200;
+    public static final int ACK_TIMEOUT = 3 * 1000;
+    public static final int MAX_ATTEMPTS = 3;
+
+    private static final int ACK_BUFFER_SIZE = 64;
+
+    private static class Batch {
+
+        private final RequestManager.RequestHandler handler;
+        private int remaining;
+        private boolean done;
+
+        public Batch(RequestManager.RequestHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    private static class Packet {
+
+        private final long id;
+        private final byte[] data;
+        private final Batch batch;
+        private int attempts;
+        private long deadline;
+
+        public Packet(long id, byte[] data, Batch batch) {
+            this.id = id;
+            this.data = data;
+            this.batch = batch;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final boolean ack;
+    private final long ackTimeout;
+
+    private final List<Packet> queue = new ArrayList<Packet>();
+    private final Map<Long, Packet> unacked = new LinkedHashMap<Long, Packet>();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong acked = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    private volatile boolean running;
+    private DatagramSocket socket;
+    private Thread thread;
+
+    public DatagramTransport(String host, int port, boolean ack) {
+        this(host, port, ack, ACK_TIMEOUT);
+    }
+
+    public DatagramTransport(String host, int port, boolean ack, long ackTimeout) {
+        this.host = host;
+        this.port = port;
+        this.ack = ack;
+        this.ackTimeout = ackTimeout;
+    }
+
+    public void start() {
+        try {
+            socket = new DatagramSocket();
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "datagram");
+        thread.start();
+        if (ack) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    receive();
+                }
+            }, "datagram-ack").start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        socket.close();
+        synchronized (this) {
+            notifyAll();
+        }
+        thread.interrupt();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getAcked() {
+        return acked.get();
+    }
+
+    public long getLost() {
+        return lost.get();
+    }
+
+    // Handler is called on a transport thread
+    public void send(List<Long> ids, List<String> queries, RequestManager.RequestHandler handler) {
+        Batch batch = new Batch(handler);
+        List<Packet> packets = new ArrayList<Packet>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(MAX_PAYLOAD);
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                byte[] line = (ids.get(i) + " " + queries.get(i) + "\n").getBytes("UTF-8");
+                if (buffer.size() > 0 && buffer.size() + line.length > MAX_PAYLOAD) {
+                    packets.add(new Packet(ids.get(i - 1), buffer.toByteArray(), batch));
+                    buffer.reset();
+                }
+                buffer.write(line, 0, line.length);
+            }
+        } catch (UnsupportedEncodingException error) {
+            throw new AssertionError(error);
+        }
+        if (buffer.size() > 0) {
+            packets.add(new Packet(ids.get(ids.size() - 1), buffer.toByteArray(), batch));
+        }
+        synchronized (this) {
+            batch.remaining = packets.size();
+            queue.addAll(packets);
+            notifyAll();
+        }
+    }
+
+    private void complete(Batch batch, boolean success) {
+        synchronized (this) {
+            if (batch.done) {
+                return;
+            }
+            if (success) {
+                batch.remaining -= 1;
+                if (batch.remaining > 0) {
+                    return;
+                }
+            } else {
+                Iterator<Packet> iterator = unacked.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().batch == batch) {
+                        iterator.remove();
+                    }
+                }
+            }
+            batch.done = true;
+        }
+        batch.handler.onComplete(success);
+    }
+
+    private void loop() {
+        InetSocketAddress address = null;
+        List<Packet> due = new ArrayList<Packet>();
+        while (running) {
+            due.clear();
+            try {
+                synchronized (this) {
+                    while (running) {
+                        due.addAll(queue);
+                        queue.clear();
+                        long now = System.currentTimeMillis();
+                        long next = Long.MAX_VALUE;
+                        for (Packet packet : unacked.values()) {
+                            if (packet.deadline <= now) {
+                                due.add(packet);
+                            } else {
+                                next = Math.min(next, packet.deadline);
+                            }
+                        }
+                        if (!due.isEmpty()) {
+                            break;
+                        }
+                        wait(next == Long.MAX_VALUE ? 0 : next - now);
+                    }
+                }
+            } catch (InterruptedException error) {
+                break;
+            }
+            for (Packet packet : due) {
+                synchronized (this) {
+                    if (packet.batch.done || packet.attempts > 0 && unacked.get(packet.id) != packet) {
+                        continue;
+                    }
+                    if (packet.attempts >= MAX_ATTEMPTS) {
+                        unacked.remove(packet.id);
+                        lost.incrementAndGet();
+                    }
+                }
+                if (packet.attempts >= MAX_ATTEMPTS) {
+                    complete(packet.batch, false);
+                    continue;
+                }
+                if (ack) {
+                    synchronized (this) {
+                        packet.attempts += 1;
+                        packet.deadline = System.currentTimeMillis() + ackTimeout;
+                        unacked.put(packet.id, packet);
+                    }
+                }
+                try {
+                    if (address == null || address.isUnresolved()) {
+                        address = new InetSocketAddress(host, port);
+                    }
+                    socket.send(new DatagramPacket(packet.data, packet.data.length, address));
+                    sent.incrementAndGet();
+                } catch (IOException | IllegalArgumentException error) {
+                    Log.w(TAG, error);
+                    complete(packet.batch, false);
+                    continue;
+                }
+                if (!ack) {
+                    complete(packet.batch, true);
+                }
+            }
+        }
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[ACK_BUFFER_SIZE];
+        DatagramPacket datagram = new DatagramPacket(buffer, buffer.length);
+        while (running) {
+            try {
+                datagram.setLength(buffer.length);
+                socket.receive(datagram);
+                long id = Long.parseLong(
+                        new String(buffer, 0, datagram.getLength(), "US-ASCII").trim());
+                Packet packet;
+                synchronized (this) {
+                    packet = unacked.remove(id);
+                }
+                if (packet != null) {
+                    acked.incrementAndGet();
+                    complete(packet.batch, true);
+                }
+            } catch (NumberFormatException error) {
+                Log.w(TAG, error);
+            } catch (IOException error) {
+                if (running) {
+                    Log.w(TAG, error);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        long sent = this.sent.get();
+        String result = sent + " sent";
+        if (ack) {
+            long acked = this.acked.get();
+            result += ", " + acked + " acked, " + (sent > 0 ? (sent - acked) * 100 / sent : 0) + "% loss";
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+public class FusionPositionProvider extends PositionProvider implements LocationListener {
+
+    //
+    // GPS and network updates run side by side. Fixes are collected for one
+    // period and only the best of them is reported when the period ends. A
+    // newer fix replaces the current best one unless it is less accurate by
+    // more than AGE_PENALTY meters for every second between the two.
+    //
+
+    private static final double AGE_PENALTY = 5;
+    private static final double UNKNOWN_ACCURACY = 1000;
+
+    private final Handler handler = new Handler();
+
+    private final Location bestLocation = new Location(LocationManager.GPS_PROVIDER);
+    private long bestTime;
+    private boolean hasBest;
+
+    private final Runnable windowTask = new Runnable() {
+        @Override
+        public void run() {
+            handler.postDelayed(this, period);
+            if (hasBest) {
+                hasBest = false;
+                Log.i(TAG, "fusion " + bestLocation.getProvider());
+                updateLocation(bestLocation);
+            }
+        }
+    };
+
+    public FusionPositionProvider(Context context, PositionListener listener) {
+        super(context, listener);
+    }
+
+    public void startUpdates() {
+        for (String provider : new String[] { LocationManager.GPS_PROVIDER, LocationManager.NETWORK_PROVIDER }) {
+            if (locationManager.getProvider(provider) != null) {
+                locationManager.requestLocationUpdates(provider, period, 0, this);
+            }
+        }
+        handler.postDelayed(windowTask, period);
+    }
+
+    public void stopUpdates() {
+        locationManager.removeUpdates(this);
+        handler.removeCallbacks(windowTask);
+        hasBest = false;
+    }
+
+    private static double getAccuracy(Location location) {
+        return location.hasAccuracy() ? location.getAccuracy() : UNKNOWN_ACCURACY;
+    }
+
+    @Override
+    public void onLocationChanged(Location location) {
+        long now = SystemClock.elapsedRealtime();
+        double age = (now - bestTime) / 1000.0;
+        if (!hasBest || getAccuracy(location) <= getAccuracy(bestLocation) + age * AGE_PENALTY) {
+            bestLocation.set(location);
+            bestTime = now;
+            hasBest = true;
+        }
+    }
+
+    @Override
+    public void onStatusChanged(String provider, int status, Bundle extras) {
+    }
+
+    @Override
+    public void onProviderEnabled(String provider) {
+    }
+
+    @Override
+    public void onProviderDisabled(String provider) {
+    }
+
+}
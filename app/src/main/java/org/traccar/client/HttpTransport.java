@@ -0,0 +1,310 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HttpTransport {
+
+    private static final String TAG = HttpTransport.class.getSimpleName();
+
+    private static final int IDLE_TIMEOUT = 60 * 1000;
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final int STALE = -1;
+
+    private static final AtomicLong handshakeCount = new AtomicLong();
+    private static final AtomicLong reuseCount = new AtomicLong();
+
+    private static final Map<String, LinkedList<Connection>> idleConnections = new HashMap<String, LinkedList<Connection>>();
+
+    private static class Connection {
+
+        private final Socket socket;
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+        private long lastUsed;
+
+        public Connection(String host, int port, int timeout) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), timeout);
+                socket.setSoTimeout(timeout);
+                socket.setTcpNoDelay(true);
+                inputStream = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+                outputStream = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            } catch (IOException error) {
+                close();
+                throw error;
+            }
+        }
+
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException error) {
+                Log.w(TAG, error);
+            }
+        }
+    }
+
+    public static long getHandshakeCount() {
+        return handshakeCount.get();
+    }
+
+    public static long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    private static String getKey(URL url) {
+        return url.getHost() + ':' + getPort(url);
+    }
+
+    private static int getPort(URL url) {
+        return url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    }
+
+    private static Connection takeConnection(String key) {
+        synchronized (idleConnections) {
+            LinkedList<Connection> connections = idleConnections.get(key);
+            while (connections != null && !connections.isEmpty()) {
+                Connection connection = connections.removeLast();
+                if (SystemClock.elapsedRealtime() - connection.lastUsed < IDLE_TIMEOUT) {
+                    return connection;
+                }
+                connection.close();
+            }
+        }
+        return null;
+    }
+
+    private static void releaseConnection(String key, Connection connection) {
+        connection.lastUsed = SystemClock.elapsedRealtime();
+        synchronized (idleConnections) {
+            LinkedList<Connection> connections = idleConnections.get(key);
+            if (connections == null) {
+                connections = new LinkedList<Connection>();
+                idleConnections.put(key, connections);
+            }
+            connections.addLast(connection);
+        }
+    }
+
+    public static int send(
+            URL url, String contentType, String contentEncoding, byte[] content, int timeout) throws IOException {
+        String key = getKey(url);
+        Connection connection = takeConnection(key);
+        if (connection != null) {
+            int status = send(connection, url, contentType, contentEncoding, content);
+            if (status != STALE) {
+                reuseCount.incrementAndGet();
+                return status;
+            }
+            // Server closed the idle connection before reading the request, try again on a fresh one
+            Log.d(TAG, "stale connection");
+        }
+        connection = new Connection(url.getHost(), getPort(url), timeout);
+        handshakeCount.incrementAndGet();
+        int status = send(connection, url, contentType, contentEncoding, content);
+        if (status == STALE) {
+            throw new EOFException("Connection closed");
+        }
+        return status;
+    }
+
+    // Returns STALE if the peer closed or reset the connection before the first response byte
+    private static int send(
+            Connection connection, URL url, String contentType, String contentEncoding, byte[] content) throws IOException {
+        boolean keepAlive = false;
+        try {
+            try {
+                writeRequest(connection.outputStream, url, contentType, contentEncoding, content);
+                connection.inputStream.mark(1);
+                if (connection.inputStream.read() == -1) {
+                    return STALE;
+                }
+                connection.inputStream.reset();
+            } catch (SocketException error) {
+                return STALE;
+            }
+            Response response = readResponse(connection.inputStream);
+            keepAlive = response.keepAlive;
+            return response.status;
+        } finally {
+            if (keepAlive) {
+                releaseConnection(getKey(url), connection);
+            } else {
+                connection.close();
+            }
+        }
+    }
+
+    private static void writeRequest(
+            OutputStream outputStream, URL url, String contentType, String contentEncoding, byte[] content)
+            throws IOException {
+
+        String path = url.getPath().length() == 0 ? "/" : url.getPath();
+        if (url.getQuery() != null) {
+            path += '?' + url.getQuery();
+        }
+
+        StringBuilder header = new StringBuilder();
+        header.append(content != null ? "POST " : "GET ").append(path).append(" HTTP/1.1\r\n");
+        header.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1) {
+            header.append(':').append(url.getPort());
+        }
+        header.append("\r\n");
+        header.append("Connection: keep-alive\r\n");
+        if (content != null) {
+            header.append("Content-Type: ").append(contentType).append("\r\n");
+            if (contentEncoding != null) {
+                header.append("Content-Encoding: ").append(contentEncoding).append("\r\n");
+            }
+            header.append("Content-Length: ").append(content.length).append("\r\n");
+        }
+        header.append("\r\n");
+
+        outputStream.write(header.toString().getBytes("ISO-8859-1"));
+        if (content != null) {
+            outputStream.write(content);
+        }
+        outputStream.flush();
+    }
+
+    private static class Response {
+        private int status;
+        private boolean keepAlive;
+    }
+
+    private static Response readResponse(InputStream inputStream) throws IOException {
+        Response response = new Response();
+
+        String statusLine = readLine(inputStream);
+        String[] parts = statusLine.split(" ");
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid status line");
+        }
+        try {
+            response.status = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException error) {
+            throw new IOException("Invalid status code");
+        }
+        response.keepAlive = parts[0].equals("HTTP/1.1");
+
+        long contentLength = -1;
+        boolean chunked = false;
+        String line;
+        while ((line = readLine(inputStream)).length() > 0) {
+            int separator = line.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String name = line.substring(0, separator).trim().toLowerCase(Locale.US);
+            String value = line.substring(separator + 1).trim().toLowerCase(Locale.US);
+            if (name.equals("content-length")) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException error) {
+                    throw new IOException("Invalid content length");
+                }
+            } else if (name.equals("transfer-encoding")) {
+                chunked = value.contains("chunked");
+            } else if (name.equals("connection")) {
+                if (value.contains("close")) {
+                    response.keepAlive = false;
+                } else if (value.contains("keep-alive")) {
+                    response.keepAlive = true;
+                }
+            }
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        if (response.status / 100 == 1) {
+            return readResponse(inputStream);
+        } else if (response.status == 204 || response.status == 304) {
+            return response;
+        } else if (chunked) {
+            long chunkLength;
+            while ((chunkLength = parseChunkLength(readLine(inputStream))) > 0) {
+                skip(inputStream, buffer, chunkLength);
+                readLine(inputStream);
+            }
+            while (readLine(inputStream).length() > 0);
+        } else if (contentLength >= 0) {
+            skip(inputStream, buffer, contentLength);
+        } else {
+            while (inputStream.read(buffer) != -1);
+            response.keepAlive = false;
+        }
+
+        return response;
+    }
+
+    private static long parseChunkLength(String line) throws IOException {
+        int extension = line.indexOf(';');
+        if (extension >= 0) {
+            line = line.substring(0, extension);
+        }
+        try {
+            return Long.parseLong(line.trim(), 16);
+        } catch (NumberFormatException error) {
+            throw new IOException("Invalid chunk length");
+        }
+    }
+
+    private static void skip(InputStream inputStream, byte[] buffer, long length) throws IOException {
+        while (length > 0) {
+            int count = inputStream.read(buffer, 0, (int) Math.min(buffer.length, length));
+            if (count == -1) {
+                throw new EOFException();
+            }
+            length -= count;
+        }
+    }
+
+    private static String readLine(InputStream inputStream) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int value;
+        while ((value = inputStream.read()) != '\n') {
+            if (value == -1) {
+                throw new EOFException();
+            }
+            if (value != '\r') {
+                line.append((char) value);
+            }
+        }
+        return line.toString();
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class KalmanFilter {
+
+    //
+    // Constant velocity model with independent east and north axes in meters
+    // around the first accepted fix. Each axis keeps position, velocity and a
+    // symmetric 2x2 covariance, so an update only touches primitive fields.
+    // The measurement variance is the reported accuracy squared.
+    //
+    // A fix that would require moving faster than MAX_SPEED beyond its own
+    // accuracy is rejected. After MAX_REJECTIONS such fixes in a row the
+    // filter assumes it was the one that went wrong and restarts from the
+    // latest fix.
+    //
+
+    private static final double EARTH_RADIUS = 6371000;
+
+    public static final double MAX_SPEED = 70;
+    public static final int MAX_REJECTIONS = 3;
+
+    private static final double ACCELERATION_VARIANCE = 4;
+    private static final double MIN_ACCURACY = 1;
+    private static final double DEFAULT_ACCURACY = 50;
+
+    private boolean initialized;
+    private int rejections;
+    private long time;
+
+    private double originLatitude;
+    private double originLongitude;
+    private double scale;
+
+    private double east;
+    private double eastVelocity;
+    private double eastVariance;
+    private double eastCovariance;
+    private double eastVelocityVariance;
+
+    private double north;
+    private double northVelocity;
+    private double northVariance;
+    private double northCovariance;
+    private double northVelocityVariance;
+
+    public void reset() {
+        initialized = false;
+        rejections = 0;
+    }
+
+    public double getLatitude() {
+        return originLatitude + Math.toDegrees(north / EARTH_RADIUS);
+    }
+
+    public double getLongitude() {
+        return originLongitude + Math.toDegrees(east / (EARTH_RADIUS * scale));
+    }
+
+    public boolean update(long time, double latitude, double longitude, float accuracy) {
+        double variance = accuracy > 0 ? Math.max(accuracy, MIN_ACCURACY) : DEFAULT_ACCURACY;
+        variance *= variance;
+
+        if (!initialized) {
+            originLatitude = latitude;
+            originLongitude = longitude;
+            scale = Math.cos(Math.toRadians(latitude));
+            east = 0;
+            north = 0;
+            eastVelocity = 0;
+            northVelocity = 0;
+            eastVariance = variance;
+            northVariance = variance;
+            eastCovariance = 0;
+            northCovariance = 0;
+            eastVelocityVariance = MAX_SPEED * MAX_SPEED;
+            northVelocityVariance = MAX_SPEED * MAX_SPEED;
+            this.time = time;
+            initialized = true;
+            return true;
+        }
+
+        double dt = Math.max(time - this.time, 0) / 1000.0;
+        double measuredEast = Math.toRadians(longitude - originLongitude) * EARTH_RADIUS * scale;
+        double measuredNorth = Math.toRadians(latitude - originLatitude) * EARTH_RADIUS;
+
+        double dx = measuredEast - east;
+        double dy = measuredNorth - north;
+        double jump = Math.sqrt(dx * dx + dy * dy) - Math.sqrt(variance) - Math.sqrt(eastVariance + northVariance);
+        if (jump > MAX_SPEED * Math.max(dt, 1)) {
+            rejections += 1;
+            if (rejections >= MAX_REJECTIONS) {
+                reset();
+                return update(time, latitude, longitude, accuracy);
+            }
+            return false;
+        }
+        rejections = 0;
+        this.time = time;
+
+        double q = ACCELERATION_VARIANCE;
+        double dt2 = dt * dt;
+
+        east += eastVelocity * dt;
+        eastVariance += 2 * dt * eastCovariance + dt2 * eastVelocityVariance + q * dt2 * dt2 / 4;
+        eastCovariance += dt * eastVelocityVariance + q * dt2 * dt / 2;
+        eastVelocityVariance += q * dt2;
+
+        north += northVelocity * dt;
+        northVariance += 2 * dt * northCovariance + dt2 * northVelocityVariance + q * dt2 * dt2 / 4;
+        northCovariance += dt * northVelocityVariance + q * dt2 * dt / 2;
+        northVelocityVariance += q * dt2;
+
+        double gain = eastVariance / (eastVariance + variance);
+        double velocityGain = eastCovariance / (eastVariance + variance);
+        double residual = measuredEast - east;
+        east += gain * residual;
+        eastVelocity += velocityGain * residual;
+        eastVelocityVariance -= velocityGain * eastCovariance;
+        eastVariance *= 1 - gain;
+        eastCovariance *= 1 - gain;
+
+        gain = northVariance / (northVariance + variance);
+        velocityGain = northCovariance / (northVariance + variance);
+        residual = measuredNorth - north;
+        north += gain * residual;
+        northVelocity += velocityGain * residual;
+        northVelocityVariance -= velocityGain * northCovariance;
+        northVariance *= 1 - gain;
+        northCovariance *= 1 - gain;
+
+        return true;
+    }
+
+}
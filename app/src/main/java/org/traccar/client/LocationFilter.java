@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.location.Location;
+
+public class LocationFilter {
+
+    private final double minDistance;
+    private final double minAngle;
+    private final long heartbeat;
+    private final float minAccuracy;
+
+    private boolean hasLast;
+    private long lastTime;
+    private double lastLatitude;
+    private double lastLongitude;
+    private float lastBearing;
+    private boolean lastHasBearing;
+
+    public LocationFilter(double minDistance, double minAngle, long heartbeat, float minAccuracy) {
+        this.minDistance = minDistance;
+        this.minAngle = minAngle;
+        this.heartbeat = heartbeat;
+        this.minAccuracy = minAccuracy;
+    }
+
+    public boolean accept(Location location) {
+        if (minAccuracy > 0 && location.hasAccuracy() && location.getAccuracy() > minAccuracy) {
+            return false;
+        }
+        if (hasLast && !isSignificant(location)) {
+            return false;
+        }
+        hasLast = true;
+        lastTime = location.getTime();
+        lastLatitude = location.getLatitude();
+        lastLongitude = location.getLongitude();
+        lastBearing = location.getBearing();
+        lastHasBearing = location.hasBearing();
+        return true;
+    }
+
+    private boolean isSignificant(Location location) {
+        if (heartbeat > 0 && location.getTime() - lastTime >= heartbeat) {
+            return true;
+        }
+        double distance = TrackSimplifier.distance(
+                lastLatitude, lastLongitude, location.getLatitude(), location.getLongitude());
+        if (distance >= minDistance) {
+            return true;
+        }
+        if (minAngle > 0 && lastHasBearing && location.hasBearing()) {
+            double angle = Math.abs(location.getBearing() - lastBearing) % 360;
+            return Math.min(angle, 360 - angle) >= minAngle;
+        }
+        return false;
+    }
+
+}
@@ -51,12 +51,64 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
     public static final String KEY_PORT = "port";
     public static final String KEY_INTERVAL = "interval";
     public static final String KEY_PROVIDER = "provider";
+    public static final String KEY_BATCH = "batch";
+    public static final String KEY_WINDOW = "window";
+    public static final String KEY_ADAPTIVE_BATCH = "adaptive_batch";
+    public static final String KEY_FORMAT = "format";
+    public static final String KEY_COMPRESSION = "compression";
+    public static final String KEY_TRANSPORT = "transport";
+    public static final String KEY_DATAGRAM_ACK = "datagram_ack";
+    public static final String KEY_QUEUE = "queue";
+    public static final String KEY_LIVE = "live";
+    public static final String KEY_BACKFILL = "backfill";
+    public static final String KEY_COALESCE = "coalesce";
+    public static final String KEY_COALESCE_MIN = "coalesce_min";
+    public static final String KEY_COALESCE_POINTS = "coalesce_points";
+    public static final String KEY_DEFER = "defer";
+    public static final String KEY_DEFER_THRESHOLD = "defer_threshold";
+    public static final String KEY_DEFER_AGE = "defer_age";
+    public static final String KEY_BACKLOG = "backlog";
+    public static final String KEY_BACKLOG_SIZE = "backlog_size";
+    public static final String KEY_EVICTION = "eviction";
+    public static final String KEY_SIMPLIFY = "simplify";
+    public static final String KEY_DISTANCE = "distance";
+    public static final String KEY_ANGLE = "angle";
+    public static final String KEY_HEARTBEAT = "heartbeat";
+    public static final String KEY_ACCURACY = "accuracy";
+    public static final String KEY_ADAPTIVE = "adaptive";
+    public static final String KEY_STATIONARY = "stationary";
+    public static final String KEY_SMOOTHING = "smoothing";
     public static final String KEY_STATUS = "status";
 
     private static final int PERMISSIONS_REQUEST_LOCATION = 2;
 
     private SharedPreferences sharedPreferences;
 
+    // Numeric preferences are free text, so an empty or invalid value falls back to the default
+    public static int getInt(SharedPreferences preferences, String key, int defaultValue) {
+        try {
+            return Integer.parseInt(preferences.getString(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException error) {
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(SharedPreferences preferences, String key, long defaultValue) {
+        try {
+            return Long.parseLong(preferences.getString(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException error) {
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(SharedPreferences preferences, String key, double defaultValue) {
+        try {
+            return Double.parseDouble(preferences.getString(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException error) {
+            return defaultValue;
+        }
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -116,6 +168,40 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
         preferenceScreen.findPreference(KEY_PORT).setEnabled(enabled);
         preferenceScreen.findPreference(KEY_INTERVAL).setEnabled(enabled);
         preferenceScreen.findPreference(KEY_PROVIDER).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_BATCH).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_WINDOW).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_ADAPTIVE_BATCH).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_FORMAT).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_COMPRESSION).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_TRANSPORT).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_DATAGRAM_ACK).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_QUEUE).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_LIVE).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_BACKFILL).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_COALESCE).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_COALESCE_MIN).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_COALESCE_POINTS).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_DEFER).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_DEFER_THRESHOLD).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_DEFER_AGE).setEnabled(enabled);
+        setBacklogPreferencesEnabled(enabled);
+        preferenceScreen.findPreference(KEY_DISTANCE).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_ANGLE).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_HEARTBEAT).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_ACCURACY).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_ADAPTIVE).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_STATIONARY).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_SMOOTHING).setEnabled(enabled);
+    }
+
+    // Backlog limits and simplification are only implemented by the database storage
+    private void setBacklogPreferencesEnabled(boolean enabled) {
+        enabled = enabled && !sharedPreferences.getString(KEY_QUEUE, "database").equals("journal");
+        PreferenceScreen preferenceScreen = getPreferenceScreen();
+        preferenceScreen.findPreference(KEY_BACKLOG).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_BACKLOG_SIZE).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_EVICTION).setEnabled(enabled);
+        preferenceScreen.findPreference(KEY_SIMPLIFY).setEnabled(enabled);
     }
 
     @Override
@@ -128,6 +214,8 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
             }
         } else if (key.equals(KEY_DEVICE)) {
             findPreference(KEY_DEVICE).setSummary(sharedPreferences.getString(KEY_DEVICE, null));
+        } else if (key.equals(KEY_QUEUE)) {
+            setBacklogPreferencesEnabled(findPreference(KEY_QUEUE).isEnabled());
         }
     }
 
@@ -158,6 +246,7 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
             ((EditTextPreference) findPreference(KEY_DEVICE)).setText(id);
         }
         findPreference(KEY_DEVICE).setSummary(sharedPreferences.getString(KEY_DEVICE, null));
+        setBacklogPreferencesEnabled(findPreference(KEY_QUEUE).isEnabled());
     }
 
     private void startTrackingService(boolean checkPermission, boolean permission) {
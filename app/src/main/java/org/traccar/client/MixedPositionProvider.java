@@ -15,37 +15,177 @@
  */
 package org.traccar.client;
 
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.location.GpsStatus;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
-public class MixedPositionProvider extends PositionProvider implements LocationListener, GpsStatus.Listener {
+public class MixedPositionProvider extends PositionProvider implements LocationListener {
 
     private static int FIX_TIMEOUT = 30 * 1000;
 
+    //
+    // After STATIONARY_FIXES consecutive fixes within STATIONARY_RADIUS of the
+    // first one, GPS is switched off and only the network provider is kept as
+    // a wake signal. A network fix further than WAKE_DISTANCE (or its own
+    // accuracy) from the parking spot, or the periodic GPS recheck, switches
+    // back to full GPS updates. The recheck is an elapsed realtime wakeup
+    // alarm, a handler callback would not run while the device sleeps.
+    //
+
+    private static final int STATIONARY_FIXES = 5;
+    private static final double STATIONARY_RADIUS = 50;
+    private static final double WAKE_DISTANCE = 200;
+    private static final int RECHECK_FACTOR = 10;
+    private static final String ACTION_RECHECK = "org.traccar.client.RECHECK";
+
     private LocationListener backupListener;
-    private long lastFixTime;
+
+    private final Context context;
+    private final Handler handler = new Handler();
+    private final AlarmManager alarmManager;
+    private final PendingIntent recheckIntent;
+    private final boolean detectStationary;
+
+    private boolean isStationary;
+    private int stationaryCount;
+    private double anchorLatitude;
+    private double anchorLongitude;
+    private long stateTime = SystemClock.elapsedRealtime();
+    private long stationaryTime;
+
+    private final Runnable watchdogTask = new Runnable() {
+        @Override
+        public void run() {
+            Log.i(TAG, "provider timeout");
+            startBackupProvider();
+        }
+    };
+
+    private final BroadcastReceiver recheckReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.i(TAG, "stationary recheck");
+            setStationary(false);
+        }
+    };
+
+    private boolean isRecheckScheduled;
+
+    private final LocationListener wakeListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            double distance = TrackSimplifier.distance(
+                    anchorLatitude, anchorLongitude, location.getLatitude(), location.getLongitude());
+            Log.i(TAG, "wake provider location " + distance);
+            if (distance > Math.max(WAKE_DISTANCE, location.getAccuracy())) {
+                setStationary(false);
+            }
+        }
+
+        @Override
+        public void onStatusChanged(String s, int i, Bundle bundle) {
+        }
+
+        @Override
+        public void onProviderEnabled(String s) {
+        }
+
+        @Override
+        public void onProviderDisabled(String s) {
+        }
+    };
 
     public MixedPositionProvider(Context context, PositionListener listener) {
         super(context, listener);
+        this.context = context;
+        alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        recheckIntent = PendingIntent.getBroadcast(context, 0, new Intent(ACTION_RECHECK), 0);
+        detectStationary = PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(MainActivity.KEY_STATIONARY, false);
     }
 
     public void startUpdates() {
-        lastFixTime = System.currentTimeMillis();
-        locationManager.addGpsStatusListener(this);
-        locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, period, 0, this);
+        if (isStationary) {
+            if (locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)) {
+                locationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, period, 0, wakeListener);
+            }
+            context.registerReceiver(recheckReceiver, new IntentFilter(ACTION_RECHECK));
+            alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                    SystemClock.elapsedRealtime() + period * RECHECK_FACTOR, recheckIntent);
+            isRecheckScheduled = true;
+        } else {
+            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, period, 0, this);
+            scheduleWatchdog();
+        }
+    }
+
+    private void scheduleWatchdog() {
+        handler.removeCallbacks(watchdogTask);
+        handler.postDelayed(watchdogTask, period + FIX_TIMEOUT);
     }
 
     public void stopUpdates() {
         locationManager.removeUpdates(this);
-        locationManager.removeGpsStatusListener(this);
+        locationManager.removeUpdates(wakeListener);
+        handler.removeCallbacks(watchdogTask);
+        if (isRecheckScheduled) {
+            alarmManager.cancel(recheckIntent);
+            context.unregisterReceiver(recheckReceiver);
+            isRecheckScheduled = false;
+        }
         stopBackupProvider();
     }
 
+    private void setStationary(boolean isStationary) {
+        Log.i(TAG, isStationary ? "stationary" : "moving");
+        stopUpdates();
+        long now = SystemClock.elapsedRealtime();
+        if (this.isStationary) {
+            stationaryTime += now - stateTime;
+        }
+        stateTime = now;
+        this.isStationary = isStationary;
+        stationaryCount = 0;
+        updateStatistic();
+        startUpdates();
+    }
+
+    private void updateStatistic() {
+        long inState = SystemClock.elapsedRealtime() - stateTime;
+        long total = stationaryTime + (isStationary ? inState : 0);
+        StatusActivity.setStatistic(R.string.status_statistics_stationary, context.getString(
+                isStationary ? R.string.status_stationary : R.string.status_moving)
+                + ", " + inState / 60000 + " min (" + total / 60000 + " min stationary)");
+    }
+
+    private void checkStationary(Location location) {
+        double distance = TrackSimplifier.distance(
+                anchorLatitude, anchorLongitude, location.getLatitude(), location.getLongitude());
+        if (stationaryCount == 0 || distance > STATIONARY_RADIUS) {
+            anchorLatitude = location.getLatitude();
+            anchorLongitude = location.getLongitude();
+            stationaryCount = 1;
+        } else {
+            stationaryCount += 1;
+        }
+        if (stationaryCount >= STATIONARY_FIXES) {
+            setStationary(true);
+        } else {
+            updateStatistic();
+        }
+    }
+
     private void startBackupProvider() {
         Log.i(TAG, "backup provider start");
         if (backupListener == null) {
@@ -87,8 +227,11 @@ public class MixedPositionProvider extends PositionProvider implements LocationL
     public void onLocationChanged(Location location) {
         Log.i(TAG, "provider location");
         stopBackupProvider();
-        lastFixTime = System.currentTimeMillis();
+        scheduleWatchdog();
         updateLocation(location);
+        if (detectStationary && !isStationary) {
+            checkStationary(location);
+        }
     }
 
     @Override
@@ -107,11 +250,4 @@ public class MixedPositionProvider extends PositionProvider implements LocationL
         startBackupProvider();
     }
 
-    @Override
-    public void onGpsStatusChanged(int event) {
-        if (backupListener == null && System.currentTimeMillis() - (lastFixTime + period) > FIX_TIMEOUT) {
-            startBackupProvider();
-        }
-    }
-
 }
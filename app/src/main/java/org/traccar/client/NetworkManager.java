@@ -15,12 +15,14 @@
  */
 package org.traccar.client;
 
+import android.annotation.TargetApi;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.Build;
 import android.util.Log;
 
 public class NetworkManager extends BroadcastReceiver {
@@ -46,6 +48,19 @@ public class NetworkManager extends BroadcastReceiver {
         return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
     }
 
+    public int getNetworkType() {
+        NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+        return activeNetwork != null ? activeNetwork.getType() : -1;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public boolean isMetered() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return connectivityManager.isActiveNetworkMetered();
+        }
+        return getNetworkType() != ConnectivityManager.TYPE_WIFI;
+    }
+
     public void start() {
         IntentFilter filter = new IntentFilter();
         filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class NetworkQualityEstimator {
+
+    //
+    // Round trip time, throughput and failure rate are exponentially weighted
+    // averages over completed requests. The batch size follows AIMD: one more
+    // position after each success, half after each failure. It is also capped
+    // so that a batch should upload within TARGET_DURATION at the measured
+    // throughput.
+    //
+
+    private static final double WEIGHT = 0.2;
+    private static final long TARGET_DURATION = 10 * 1000;
+
+    private final int maxBatchSize;
+
+    private double batchSize = 1;
+
+    private double roundTripTime;
+    private double throughput;
+    private double bytesPerPosition;
+    private double failureRate;
+    private boolean hasSample;
+
+    public NetworkQualityEstimator(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    private static double average(double average, double value) {
+        return average + WEIGHT * (value - average);
+    }
+
+    public void onSuccess(int positions, long bytes, long duration) {
+        duration = Math.max(duration, 1);
+        if (hasSample) {
+            roundTripTime = average(roundTripTime, duration);
+            throughput = average(throughput, bytes * 1000.0 / duration);
+            bytesPerPosition = average(bytesPerPosition, (double) bytes / positions);
+            failureRate = average(failureRate, 0);
+        } else {
+            roundTripTime = duration;
+            throughput = bytes * 1000.0 / duration;
+            bytesPerPosition = (double) bytes / positions;
+            hasSample = true;
+        }
+        batchSize = Math.min(batchSize + 1, maxBatchSize);
+    }
+
+    public void onFailure() {
+        failureRate = average(failureRate, 1);
+        batchSize = Math.max(batchSize / 2, 1);
+    }
+
+    public int getBatchSize() {
+        double result = batchSize;
+        if (hasSample && bytesPerPosition > 0) {
+            result = Math.min(result, throughput * TARGET_DURATION / 1000 / bytesPerPosition);
+        }
+        return (int) Math.max(result, 1);
+    }
+
+    public double getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    @Override
+    public String toString() {
+        return (long) roundTripTime + " ms, " + (long) (throughput / 1024) + " kB/s, "
+                + Math.round(failureRate * 100) + "% failed, batch " + getBatchSize();
+    }
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+public class PositionJournal implements PositionQueue {
+
+    //
+    // Append-only queue of fixed size records stored in memory-mapped segment
+    // files. Record ids are consecutive, so the id alone gives the segment and
+    // offset of a record. The id of the oldest undeleted record is kept in a
+    // separate head file, and the tail is recovered on open by scanning forward
+    // until a record fails its checksum. Records deleted out of order are only
+    // tracked in memory, so after a restart they may be delivered again.
+    //
+    // Record layout (96 bytes):
+    // id, time, latitude, longitude, altitude, speed, course, battery,
+    // device id length, device id (up to 27 bytes), crc32 of the preceding bytes
+    //
+
+    private static final String TAG = PositionJournal.class.getSimpleName();
+
+    public static final String DIRECTORY_NAME = "journal";
+
+    public static final int RECORD_SIZE = 96;
+    public static final int RECORDS_PER_SEGMENT = 4096;
+
+    private static final int DEVICE_ID_OFFSET = 64;
+    private static final int DEVICE_ID_SIZE = 27;
+    private static final int CHECKSUM_OFFSET = RECORD_SIZE - 4;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String HEAD_NAME = "head";
+
+    private final File directory;
+    private final Map<Long, MappedByteBuffer> segments = new HashMap<Long, MappedByteBuffer>();
+    private final Set<Long> deleted = new HashSet<Long>();
+    private final MappedByteBuffer head;
+
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32 crc = new CRC32();
+
+    private String deviceId;
+    private byte[] deviceIdBytes = new byte[0];
+
+    private long firstId;
+    private long nextId;
+
+    public PositionJournal(File directory) {
+        this.directory = directory;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Failed to create " + directory);
+            }
+            head = map(new File(directory, HEAD_NAME), 8);
+            firstId = Math.max(head.getLong(0), 1);
+            nextId = firstId;
+            while (readRecord(nextId)) {
+                nextId += 1;
+            }
+            Log.i(TAG, "journal open " + firstId + " - " + nextId);
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private File getSegmentFile(long segment) {
+        return new File(directory, SEGMENT_PREFIX + segment);
+    }
+
+    private MappedByteBuffer getSegment(long id) throws IOException {
+        long segment = (id - 1) / RECORDS_PER_SEGMENT;
+        MappedByteBuffer buffer = segments.get(segment);
+        if (buffer == null) {
+            buffer = map(getSegmentFile(segment), RECORD_SIZE * RECORDS_PER_SEGMENT);
+            segments.put(segment, buffer);
+        }
+        return buffer;
+    }
+
+    private static int getOffset(long id) {
+        return (int) ((id - 1) % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    private int checksum() {
+        crc.reset();
+        crc.update(record, 0, CHECKSUM_OFFSET);
+        return (int) crc.getValue();
+    }
+
+    private boolean readRecord(long id) throws IOException {
+        if ((id - 1) % RECORDS_PER_SEGMENT == 0 && !getSegmentFile((id - 1) / RECORDS_PER_SEGMENT).exists()) {
+            return false;
+        }
+        MappedByteBuffer segment = getSegment(id);
+        segment.position(getOffset(id));
+        segment.get(record);
+        return recordBuffer.getLong(0) == id && recordBuffer.getInt(CHECKSUM_OFFSET) == checksum();
+    }
+
+    public static boolean isDeviceIdSupported(String deviceId) {
+        try {
+            return deviceId == null || deviceId.getBytes("UTF-8").length <= DEVICE_ID_SIZE;
+        } catch (UnsupportedEncodingException error) {
+            throw new AssertionError(error);
+        }
+    }
+
+    private void writeRecord(long id, Position position) throws IOException {
+        String value = position.getDeviceId() != null ? position.getDeviceId() : "";
+        if (!value.equals(deviceId)) {
+            deviceId = value;
+            deviceIdBytes = value.getBytes("UTF-8");
+        }
+
+        recordBuffer.putLong(0, id);
+        recordBuffer.putLong(8, position.getTime().getTime());
+        recordBuffer.putDouble(16, position.getLatitude());
+        recordBuffer.putDouble(24, position.getLongitude());
+        recordBuffer.putDouble(32, position.getAltitude());
+        recordBuffer.putDouble(40, position.getSpeed());
+        recordBuffer.putDouble(48, position.getCourse());
+        recordBuffer.putDouble(56, position.getBattery());
+        record[DEVICE_ID_OFFSET] = (byte) deviceIdBytes.length;
+        Arrays.fill(record, DEVICE_ID_OFFSET + 1, CHECKSUM_OFFSET, (byte) 0);
+        System.arraycopy(deviceIdBytes, 0, record, DEVICE_ID_OFFSET + 1, deviceIdBytes.length);
+        recordBuffer.putInt(CHECKSUM_OFFSET, checksum());
+
+        MappedByteBuffer segment = getSegment(id);
+        segment.position(getOffset(id));
+        segment.put(record);
+    }
+
+    private Position decodeRecord() throws UnsupportedEncodingException {
+        Position position = new Position();
+        position.setId(recordBuffer.getLong(0));
+        position.setTime(new Date(recordBuffer.getLong(8)));
+        position.setLatitude(recordBuffer.getDouble(16));
+        position.setLongitude(recordBuffer.getDouble(24));
+        position.setAltitude(recordBuffer.getDouble(32));
+        position.setSpeed(recordBuffer.getDouble(40));
+        position.setCourse(recordBuffer.getDouble(48));
+        position.setBattery(recordBuffer.getDouble(56));
+
+        int length = record[DEVICE_ID_OFFSET];
+        boolean cached = length == deviceIdBytes.length;
+        for (int i = 0; cached && i < length; i++) {
+            cached = record[DEVICE_ID_OFFSET + 1 + i] == deviceIdBytes[i];
+        }
+        if (!cached) {
+            deviceIdBytes = new byte[length];
+            System.arraycopy(record, DEVICE_ID_OFFSET + 1, deviceIdBytes, 0, length);
+            deviceId = new String(deviceIdBytes, "UTF-8");
+        }
+        position.setDeviceId(deviceId);
+
+        return position;
+    }
+
+    @Override
+    public synchronized long getSize() {
+        return nextId - firstId - deleted.size();
+    }
+
+    @Override
+    public synchronized void insertPositions(List<Position> positions) {
+        for (Position position : positions) {
+            if (!isDeviceIdSupported(position.getDeviceId())) {
+                throw new IllegalArgumentException("Device identifier too long");
+            }
+        }
+        try {
+            Set<MappedByteBuffer> modified = new HashSet<MappedByteBuffer>();
+            long id = nextId;
+            for (Position position : positions) {
+                writeRecord(id, position);
+                modified.add(getSegment(id));
+                id += 1;
+            }
+            for (MappedByteBuffer segment : modified) {
+                segment.force();
+            }
+            for (Position position : positions) {
+                position.setId(nextId);
+                nextId += 1;
+            }
+        } catch (IOException error) {
+            invalidateRecord(nextId);
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // Stops recovery at the first record of a failed batch
+    private void invalidateRecord(long id) {
+        try {
+            MappedByteBuffer segment = getSegment(id);
+            segment.putLong(getOffset(id), 0);
+            segment.force();
+        } catch (IOException error) {
+            Log.w(TAG, error);
+        }
+    }
+
+    @Override
+    public void insertPositionsAsync(final List<Position> positions, DatabaseHelper.DatabaseHandler<Void> handler) {
+        new DatabaseHelper.DatabaseAsyncTask<Void>(handler) {
+            @Override
+            protected Void executeMethod() {
+                insertPositions(positions);
+                return null;
+            }
+        }.execute();
+    }
+
+    @Override
+    public synchronized List<Position> selectPositions(long afterId, int limit) {
+        List<Position> positions = new ArrayList<Position>();
+        try {
+            for (long id = Math.max(afterId + 1, firstId); id < nextId && positions.size() < limit; id++) {
+                if (deleted.isEmpty() || !deleted.contains(id)) {
+                    if (!readRecord(id)) {
+                        throw new IOException("Corrupted record " + id);
+                    }
+                    positions.add(decodeRecord());
+                }
+            }
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+        return positions;
+    }
+
+    @Override
+    public void selectPositionsAsync(
+            final long afterId, final int limit, DatabaseHelper.DatabaseHandler<List<Position>> handler) {
+        new DatabaseHelper.DatabaseAsyncTask<List<Position>>(handler) {
+            @Override
+            protected List<Position> executeMethod() {
+                return selectPositions(afterId, limit);
+            }
+        }.execute();
+    }
+
+    @Override
+    public synchronized void deletePositions(List<Long> ids) {
+        for (long id : ids) {
+            if (id >= firstId && id < nextId) {
+                deleted.add(id);
+            }
+        }
+        long previousId = firstId;
+        while (firstId < nextId && deleted.remove(firstId)) {
+            firstId += 1;
+        }
+        if (firstId != previousId) {
+            head.putLong(0, firstId);
+            head.force();
+            releaseSegments();
+        }
+    }
+
+    @Override
+    public void deletePositionsAsync(final List<Long> ids, DatabaseHelper.DatabaseHandler<Void> handler) {
+        new DatabaseHelper.DatabaseAsyncTask<Void>(handler) {
+            @Override
+            protected Void executeMethod() {
+                deletePositions(ids);
+                return null;
+            }
+        }.execute();
+    }
+
+    private void releaseSegments() {
+        long firstSegment = (firstId - 1) / RECORDS_PER_SEGMENT;
+        Iterator<Long> iterator = segments.keySet().iterator();
+        while (iterator.hasNext()) {
+            long segment = iterator.next();
+            if (segment < firstSegment) {
+                iterator.remove();
+            }
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(SEGMENT_PREFIX)) {
+                    try {
+                        long segment = Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length()));
+                        if (segment < firstSegment && !file.delete()) {
+                            Log.w(TAG, "failed to delete " + file);
+                        }
+                    } catch (NumberFormatException error) {
+                        Log.w(TAG, error);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -15,15 +15,10 @@
  */
 package org.traccar.client;
 
-import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.location.Location;
 import android.location.LocationManager;
-import android.os.BatteryManager;
-import android.os.Build;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
@@ -43,9 +38,12 @@ public abstract class PositionProvider {
 
     private String deviceId;
     protected String type;
-    protected final long period;
+    protected long period;
 
     private long lastUpdateTime;
+    private final LocationFilter filter;
+    private AdaptiveInterval adaptiveInterval;
+    private KalmanFilter kalmanFilter;
 
     public PositionProvider(Context context, PositionListener listener) {
         this.context = context;
@@ -58,6 +56,19 @@ public abstract class PositionProvider {
         period = Integer.parseInt(preferences.getString(MainActivity.KEY_INTERVAL, null)) * 1000;
 
         type = preferences.getString(MainActivity.KEY_PROVIDER, null);
+
+        filter = new LocationFilter(
+                MainActivity.getDouble(preferences, MainActivity.KEY_DISTANCE, 0),
+                MainActivity.getDouble(preferences, MainActivity.KEY_ANGLE, 0),
+                MainActivity.getLong(preferences, MainActivity.KEY_HEARTBEAT, 0) * 1000,
+                (float) MainActivity.getDouble(preferences, MainActivity.KEY_ACCURACY, 0));
+
+        if (preferences.getBoolean(MainActivity.KEY_ADAPTIVE, false)) {
+            adaptiveInterval = new AdaptiveInterval(period);
+        }
+        if (preferences.getBoolean(MainActivity.KEY_SMOOTHING, false)) {
+            kalmanFilter = new KalmanFilter();
+        }
     }
 
     public abstract void startUpdates();
@@ -66,24 +77,39 @@ public abstract class PositionProvider {
 
     protected void updateLocation(Location location) {
         if (location != null && location.getTime() != lastUpdateTime) {
-            Log.i(TAG, "location new");
             lastUpdateTime = location.getTime();
-            listener.onPositionUpdate(new Position(deviceId, location, getBatteryLevel()));
+            if (adaptiveInterval != null && location.hasSpeed() && adaptiveInterval.update(location.getSpeed())) {
+                updatePeriod(adaptiveInterval.getPeriod());
+            }
+            if (kalmanFilter != null && !smooth(location)) {
+                Log.i(TAG, "location rejected");
+            } else if (filter.accept(location)) {
+                Log.i(TAG, "location new");
+                listener.onPositionUpdate(new Position(deviceId, location, BatteryMonitor.getLevel(context)));
+            } else {
+                Log.i(TAG, "location filtered");
+            }
         } else {
             Log.i(TAG, location != null ? "location old" : "location nil");
         }
     }
 
-    @TargetApi(Build.VERSION_CODES.ECLAIR)
-    private double getBatteryLevel() {
-        if (android.os.Build.VERSION.SDK_INT > Build.VERSION_CODES.ECLAIR) {
-            Intent batteryIntent = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
-            int level = batteryIntent.getIntExtra(BatteryManager.EXTRA_LEVEL, 0);
-            int scale = batteryIntent.getIntExtra(BatteryManager.EXTRA_SCALE, 1);
-            return (level * 100.0) / scale;
-        } else {
-            return 0;
+    private boolean smooth(Location location) {
+        if (!kalmanFilter.update(
+                location.getTime(), location.getLatitude(), location.getLongitude(), location.getAccuracy())) {
+            return false;
         }
+        location.setLatitude(kalmanFilter.getLatitude());
+        location.setLongitude(kalmanFilter.getLongitude());
+        return true;
+    }
+
+    private void updatePeriod(long period) {
+        Log.i(TAG, "period " + period);
+        this.period = period;
+        StatusActivity.setStatistic(R.string.status_statistics_interval, period / 1000 + " s");
+        stopUpdates();
+        startUpdates();
     }
 
 }
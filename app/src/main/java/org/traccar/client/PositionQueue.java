@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.List;
+
+public interface PositionQueue {
+
+    long getSize();
+
+    void insertPositions(List<Position> positions);
+
+    void insertPositionsAsync(List<Position> positions, DatabaseHelper.DatabaseHandler<Void> handler);
+
+    List<Position> selectPositions(long afterId, int limit);
+
+    void selectPositionsAsync(long afterId, int limit, DatabaseHelper.DatabaseHandler<List<Position>> handler);
+
+    void deletePositions(List<Long> ids);
+
+    void deletePositionsAsync(List<Long> ids, DatabaseHelper.DatabaseHandler<Void> handler);
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+public class QueryFormatter {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+    private static final double FIXED_LIMIT = 1e12;
+
+    private static final int COORDINATE_DIGITS = 6;
+    private static final int VALUE_DIGITS = 2;
+
+    private final String prefix;
+    private final StringBuilder builder = new StringBuilder(256);
+
+    private String deviceId;
+    private String encodedDeviceId;
+
+    public QueryFormatter(String address, int port) {
+        prefix = "http://" + address + ':' + port;
+    }
+
+    public String getUrl() {
+        return prefix;
+    }
+
+    public String formatRequest(Position position) {
+        builder.setLength(0);
+        builder.append(prefix).append('?');
+        appendQuery(position);
+        return builder.toString();
+    }
+
+    public String formatQuery(Position position) {
+        builder.setLength(0);
+        appendQuery(position);
+        return builder.toString();
+    }
+
+    public String formatBatchRequest(List<Position> positions) {
+        builder.setLength(0);
+        for (int i = 0; i < positions.size(); i++) {
+            if (i > 0) {
+                builder.append('\n');
+            }
+            appendQuery(positions.get(i));
+        }
+        return builder.toString();
+    }
+
+    private void appendQuery(Position position) {
+        builder.append("id=").append(encodeDeviceId(position.getDeviceId()));
+        builder.append("&timestamp=").append(position.getTime().getTime() / 1000);
+        builder.append("&lat=");
+        appendFixed(builder, position.getLatitude(), COORDINATE_DIGITS);
+        builder.append("&lon=");
+        appendFixed(builder, position.getLongitude(), COORDINATE_DIGITS);
+        builder.append("&speed=");
+        appendFixed(builder, position.getSpeed(), VALUE_DIGITS);
+        builder.append("&bearing=");
+        appendFixed(builder, position.getCourse(), VALUE_DIGITS);
+        builder.append("&altitude=");
+        appendFixed(builder, position.getAltitude(), VALUE_DIGITS);
+        builder.append("&batt=");
+        appendFixed(builder, position.getBattery(), VALUE_DIGITS);
+    }
+
+    private String encodeDeviceId(String deviceId) {
+        if (deviceId == null) {
+            return "null";
+        }
+        if (!deviceId.equals(this.deviceId)) {
+            this.deviceId = deviceId;
+            encodedDeviceId = encode(deviceId);
+        }
+        return encodedDeviceId;
+    }
+
+    private static boolean isAllowed(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || "_-!.~'()*".indexOf(c) != -1;
+    }
+
+    public static String encode(String value) {
+        StringBuilder encoded = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isAllowed(c)) {
+                encoded.append(c);
+            } else {
+                int end = i + 1;
+                while (end < value.length() && !isAllowed(value.charAt(end))) {
+                    end += 1;
+                }
+                try {
+                    for (byte b : value.substring(i, end).getBytes("UTF-8")) {
+                        encoded.append('%').append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+                    }
+                } catch (UnsupportedEncodingException error) {
+                    throw new AssertionError(error);
+                }
+                i = end - 1;
+            }
+        }
+        return encoded.toString();
+    }
+
+    public static void appendFixed(StringBuilder builder, double value, int digits) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= FIXED_LIMIT) {
+            builder.append(value);
+            return;
+        }
+
+        long scale = POWERS_OF_TEN[digits];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            builder.append('-');
+        }
+        builder.append(scaled / scale).append('.');
+
+        long fraction = scaled % scale;
+        int length = digits;
+        while (length > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            length -= 1;
+        }
+        for (long limit = POWERS_OF_TEN[length - 1]; limit > 1 && fraction < limit; limit /= 10) {
+            builder.append('0');
+        }
+        builder.append(fraction);
+    }
+
+}
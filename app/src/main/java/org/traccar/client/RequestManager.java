@@ -15,32 +15,60 @@
  */
 package org.traccar.client;
 
-import android.os.AsyncTask;
+import android.util.Log;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
 public class RequestManager {
 
+    private static final String TAG = RequestManager.class.getSimpleName();
+
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+
     private static final int TIMEOUT = 15 * 1000;
+    private static final int BUFFER_SIZE = 4096;
+    private static final int THREADS = 4;
+
+    private static final WorkQueue workQueue = new WorkQueue("network", THREADS);
+
+    public static WorkQueue getWorkQueue() {
+        return workQueue;
+    }
 
     public interface RequestHandler {
         void onComplete(boolean success);
     }
 
-    private static class RequestAsyncTask extends AsyncTask<String, Void, Boolean> {
+    private static class RequestAsyncTask extends WorkQueue.Task<Boolean> {
 
         private RequestHandler handler;
+        private String request;
+        private byte[] content;
+        private String contentType;
+        private boolean compress;
 
-        public RequestAsyncTask(RequestHandler handler) {
+        public RequestAsyncTask(
+                RequestHandler handler, String request, byte[] content, String contentType, boolean compress) {
             this.handler = handler;
+            this.request = request;
+            this.content = content;
+            this.contentType = contentType;
+            this.compress = compress;
         }
 
         @Override
-        protected Boolean doInBackground(String... request) {
-            return sendRequest(request[0]);
+        protected Boolean doInBackground() {
+            try {
+                return sendRequest(request, content, contentType, compress);
+            } catch (RuntimeException error) {
+                Log.w(TAG, error);
+                return false;
+            }
         }
 
         @Override
@@ -50,19 +78,72 @@ public class RequestManager {
     }
 
     public static boolean sendRequest(String request) {
+        return sendRequest(request, null);
+    }
+
+    public static boolean sendRequest(String request, String body) {
+        return sendRequest(request, encodeBody(body), TEXT_CONTENT_TYPE, false);
+    }
+
+    private static byte[] encodeBody(String body) {
+        try {
+            return body != null ? body.getBytes("UTF-8") : null;
+        } catch (UnsupportedEncodingException error) {
+            throw new AssertionError(error);
+        }
+    }
+
+    private static void updateStatistics() {
+        StatusActivity.setStatistic(R.string.status_statistics_connections,
+                HttpTransport.getHandshakeCount() + " / " + HttpTransport.getReuseCount());
+        StatusActivity.setStatistic(R.string.status_statistics_compression,
+                Compressor.getBytesBefore() / 1024 + " KB / " + Compressor.getBytesAfter() / 1024 + " KB");
+    }
+
+    public static boolean sendRequest(String request, byte[] content, String contentType, boolean compress) {
+        String contentEncoding = null;
+        if (content != null && compress) {
+            byte[] compressed = Compressor.compress(content);
+            if (compressed != null) {
+                content = compressed;
+                contentEncoding = Compressor.CONTENT_ENCODING;
+            }
+        }
         InputStream inputStream = null;
         try {
             URL url = new URL(request);
+            if (url.getProtocol().equals("http")) {
+                int status = HttpTransport.send(url, contentType, contentEncoding, content, TIMEOUT);
+                return status / 100 == 2;
+            }
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             connection.setReadTimeout(TIMEOUT);
             connection.setConnectTimeout(TIMEOUT);
-            connection.connect();
+            if (content != null) {
+                connection.setDoOutput(true);
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty("Content-Type", contentType);
+                if (contentEncoding != null) {
+                    connection.setRequestProperty("Content-Encoding", contentEncoding);
+                }
+                connection.setFixedLengthStreamingMode(content.length);
+                OutputStream outputStream = connection.getOutputStream();
+                try {
+                    outputStream.write(content);
+                } finally {
+                    outputStream.close();
+                }
+            } else {
+                connection.connect();
+            }
             inputStream = connection.getInputStream();
-            while (inputStream.read() != -1);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (inputStream.read(buffer) != -1);
             return true;
         } catch (IOException error) {
             return false;
         } finally {
+            updateStatistics();
             try {
                 if (inputStream != null) {
                     inputStream.close();
@@ -74,8 +155,17 @@ public class RequestManager {
     }
 
     public static void sendRequestAsync(String request, RequestHandler handler) {
-        RequestAsyncTask task = new RequestAsyncTask(handler);
-        task.execute(request);
+        sendRequestAsync(request, null, null, false, handler);
+    }
+
+    public static void sendRequestAsync(String request, String body, boolean compress, RequestHandler handler) {
+        sendRequestAsync(request, encodeBody(body), TEXT_CONTENT_TYPE, compress, handler);
+    }
+
+    public static void sendRequestAsync(
+            String request, byte[] content, String contentType, boolean compress, RequestHandler handler) {
+        RequestAsyncTask task = new RequestAsyncTask(handler, request, content, contentType, compress);
+        task.execute(workQueue);
     }
 
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.Random;
+
+public class RetryPolicy {
+
+    public static final long MIN_DELAY = 30 * 1000;
+    public static final long MAX_DELAY = 30 * 60 * 1000;
+    public static final long OPEN_DELAY = 60 * 60 * 1000;
+    public static final int FAILURE_THRESHOLD = 10;
+
+    private final Random random;
+    private final long minDelay;
+    private final long maxDelay;
+
+    private int failures;
+    private long delay;
+
+    public RetryPolicy() {
+        this(new Random());
+    }
+
+    public RetryPolicy(Random random) {
+        this(random, MIN_DELAY, MAX_DELAY);
+    }
+
+    public RetryPolicy(Random random, long minDelay, long maxDelay) {
+        this.random = random;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    public void onSuccess() {
+        reset();
+    }
+
+    public void onFailure() {
+        failures += 1;
+    }
+
+    public void reset() {
+        failures = 0;
+        delay = 0;
+    }
+
+    public boolean isOpen() {
+        return failures >= FAILURE_THRESHOLD;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public long getDelay() {
+        if (isOpen()) {
+            delay = OPEN_DELAY;
+        } else {
+            long base = minDelay << Math.min(Math.max(failures - 1, 0), 16);
+            base = Math.min(base, maxDelay);
+            delay = base / 2 + (long) (random.nextDouble() * (base / 2));
+        }
+        return delay;
+    }
+
+    @Override
+    public String toString() {
+        return (isOpen() ? "open" : "closed") + ", " + failures + " failures, " + delay / 1000 + " s";
+    }
+
+}
@@ -18,9 +18,12 @@ package org.traccar.client;
 import java.text.DateFormat;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 
+import android.app.AlertDialog;
 import android.app.ListActivity;
 import android.os.Bundle;
 import android.view.Menu;
@@ -34,6 +37,7 @@ public class StatusActivity extends ListActivity {
 
     private static final LinkedList<String> messages = new LinkedList<String>();
     private static final Set<ArrayAdapter<String>> adapters = new HashSet<ArrayAdapter<String>>();
+    private static final Map<Integer, String> statistics = new LinkedHashMap<Integer, String>();
 
     private static void notifyAdapters() {
         for (ArrayAdapter<String> adapter : adapters) {
@@ -56,6 +60,12 @@ public class StatusActivity extends ListActivity {
         notifyAdapters();
     }
 
+    public static void setStatistic(int name, String value) {
+        synchronized (statistics) {
+            statistics.put(name, value);
+        }
+    }
+
     private ArrayAdapter<String> adapter;
 
     @Override
@@ -73,6 +83,27 @@ public class StatusActivity extends ListActivity {
         super.onDestroy();
     }
 
+    private void showStatistics() {
+        setStatistic(R.string.status_statistics_network_queue, RequestManager.getWorkQueue().toString());
+        setStatistic(R.string.status_statistics_storage_queue, DatabaseHelper.getWorkQueue().toString());
+
+        StringBuilder message = new StringBuilder();
+        synchronized (statistics) {
+            for (Map.Entry<Integer, String> entry : statistics.entrySet()) {
+                if (message.length() > 0) {
+                    message.append('\n');
+                }
+                message.append(getString(entry.getKey())).append(": ").append(entry.getValue());
+            }
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.menu_statistics);
+        builder.setMessage(message.toString());
+        builder.setPositiveButton(android.R.string.ok, null);
+        builder.show();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
@@ -85,6 +116,9 @@ public class StatusActivity extends ListActivity {
         if (item.getItemId() == R.id.clear) {
             clearMessages();
             return true;
+        } else if (item.getItemId() == R.id.statistics) {
+            showStatistics();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.LinkedList;
+
+public class StreamTransport {
+
+    //
+    // One long-lived TCP connection carrying one position per line:
+    //
+    // client: <id> <query>\n
+    // server: <id>\n
+    //
+    // Server acknowledgements are cumulative in stream order, an id confirms
+    // its line and every line written before it. Lines stay queued until
+    // acknowledged and everything unacknowledged is written again after a
+    // reconnect, so delivery is at least once and always in send order.
+    // Listeners see the local sequence number of the last confirmed line.
+    //
+    // Only a failed connect, a write error or a missing ack backs off before
+    // the next attempt. A server closing an idle connection is not a failure,
+    // the stream simply reconnects once there is something to send.
+    //
+
+    private static final String TAG = StreamTransport.class.getSimpleName();
+
+    private static final int TIMEOUT = 15 * 1000;
+    private static final int ACK_TIMEOUT = 30 * 1000;
+    private static final int BUFFER_SIZE = 4096;
+
+    public interface Listener {
+        void onAck(long sequence);
+    }
+
+    private static class Entry {
+
+        private final long sequence;
+        private final long id;
+        private final byte[] line;
+
+        public Entry(long sequence, long id, byte[] line) {
+            this.sequence = sequence;
+            this.id = id;
+            this.line = line;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final Listener listener;
+    private final RetryPolicy retryPolicy;
+
+    private final LinkedList<Entry> unacked = new LinkedList<Entry>();
+    private long sequence;
+    private int written;
+    private long lastAckTime;
+    private boolean closed;
+    private boolean failed;
+    private boolean wakeup;
+
+    private volatile boolean running;
+    private Thread thread;
+    private Socket socket;
+
+    public StreamTransport(String host, int port, Listener listener) {
+        this(host, port, listener, new RetryPolicy());
+    }
+
+    public StreamTransport(String host, int port, Listener listener, RetryPolicy retryPolicy) {
+        this.host = host;
+        this.port = port;
+        this.listener = listener;
+        this.retryPolicy = retryPolicy;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "stream");
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        synchronized (this) {
+            closeSocket();
+            notifyAll();
+        }
+        thread.interrupt();
+    }
+
+    // Resets the backoff and cuts a pending retry delay short, e.g. when the network comes back
+    public void reconnect() {
+        synchronized (retryPolicy) {
+            retryPolicy.reset();
+        }
+        synchronized (this) {
+            wakeup = true;
+            notifyAll();
+        }
+    }
+
+    public synchronized int getPending() {
+        return unacked.size();
+    }
+
+    // Returns the sequence number reported back by the listener once the line is acknowledged
+    public long send(long id, String query) {
+        byte[] line;
+        try {
+            line = (id + " " + query + "\n").getBytes("UTF-8");
+        } catch (UnsupportedEncodingException error) {
+            throw new AssertionError(error);
+        }
+        synchronized (this) {
+            sequence += 1;
+            unacked.addLast(new Entry(sequence, id, line));
+            notifyAll();
+            return sequence;
+        }
+    }
+
+    private void closeSocket() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException error) {
+                Log.w(TAG, error);
+            }
+            socket = null;
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            boolean failure = false;
+            try {
+                synchronized (this) {
+                    while (running && unacked.isEmpty()) {
+                        wait();
+                    }
+                }
+                if (!running) {
+                    break;
+                }
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), TIMEOUT);
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(ACK_TIMEOUT);
+                synchronized (this) {
+                    this.socket = socket;
+                    written = 0;
+                    lastAckTime = System.currentTimeMillis();
+                    closed = false;
+                    failed = false;
+                }
+                Log.i(TAG, "stream connected");
+                startReader(socket);
+                write(socket);
+            } catch (IOException error) {
+                Log.w(TAG, error);
+                failure = true;
+            } catch (InterruptedException error) {
+                break;
+            }
+            synchronized (this) {
+                closeSocket();
+                // A write racing the server closing the socket is not a failure of its own
+                failure = closed ? failed : failure || failed;
+                closed = false;
+                failed = false;
+            }
+            if (running && failure) {
+                try {
+                    backoff();
+                } catch (InterruptedException error) {
+                    break;
+                }
+            }
+        }
+        synchronized (this) {
+            closeSocket();
+        }
+    }
+
+    private void backoff() throws InterruptedException {
+        long delay;
+        synchronized (retryPolicy) {
+            retryPolicy.onFailure();
+            delay = retryPolicy.getDelay();
+        }
+        long end = System.currentTimeMillis() + delay;
+        synchronized (this) {
+            long remaining = delay;
+            while (running && !wakeup && remaining > 0) {
+                wait(remaining);
+                remaining = end - System.currentTimeMillis();
+            }
+            wakeup = false;
+        }
+    }
+
+    private void write(Socket socket) throws IOException, InterruptedException {
+        OutputStream outputStream = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        while (true) {
+            Entry[] entries;
+            synchronized (this) {
+                while (running && this.socket == socket && written == unacked.size()) {
+                    wait();
+                }
+                if (!running || this.socket != socket) {
+                    return;
+                }
+                entries = unacked.subList(written, unacked.size()).toArray(new Entry[unacked.size() - written]);
+                written = unacked.size();
+            }
+            for (Entry entry : entries) {
+                outputStream.write(entry.line);
+            }
+            outputStream.flush();
+        }
+    }
+
+    private void startReader(final Socket socket) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean failure = false;
+                try {
+                    while (true) {
+                        String line;
+                        try {
+                            line = reader.readLine();
+                        } catch (SocketTimeoutException error) {
+                            synchronized (StreamTransport.this) {
+                                if (written > 0 && System.currentTimeMillis() - lastAckTime >= ACK_TIMEOUT) {
+                                    throw error;
+                                }
+                            }
+                            continue;
+                        }
+                        if (line == null) {
+                            break;
+                        }
+                        onAck(Long.parseLong(line.trim()));
+                    }
+                } catch (IOException | NumberFormatException error) {
+                    Log.w(TAG, error);
+                    failure = true;
+                }
+                synchronized (StreamTransport.this) {
+                    if (StreamTransport.this.socket == socket) {
+                        // Closing with lines still unacknowledged counts as a failure
+                        closed = true;
+                        failed = failure || written > 0;
+                        closeSocket();
+                        StreamTransport.this.notifyAll();
+                    }
+                }
+            }
+        }, "stream-reader").start();
+    }
+
+    private void onAck(long id) {
+        long acked = 0;
+        synchronized (this) {
+            lastAckTime = System.currentTimeMillis();
+            int count = 0;
+            for (Entry entry : unacked.subList(0, written)) {
+                count += 1;
+                if (entry.id == id) {
+                    acked = entry.sequence;
+                    break;
+                }
+            }
+            if (acked == 0) {
+                Log.w(TAG, "unexpected ack " + id);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                unacked.removeFirst();
+            }
+            written -= count;
+        }
+        synchronized (retryPolicy) {
+            retryPolicy.onSuccess();
+        }
+        listener.onAck(acked);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class TrackSimplifier {
+
+    //
+    // Douglas-Peucker over a fixed size window of points using the
+    // synchronized euclidean distance: the error of a point is its distance to
+    // where the simplified track would place it at the same time. Both ends of
+    // the window are always kept, so consecutive windows join up.
+    //
+
+    private static final double EARTH_RADIUS = 6371000;
+
+    private final long[] times;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final boolean[] kept;
+    private final int[] stack;
+
+    private int count;
+
+    public TrackSimplifier(int capacity) {
+        times = new long[capacity];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        kept = new boolean[capacity];
+        stack = new int[capacity * 2];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count == times.length;
+    }
+
+    public void add(long time, double latitude, double longitude) {
+        times[count] = time;
+        latitudes[count] = latitude;
+        longitudes[count] = longitude;
+        count += 1;
+    }
+
+    public boolean isKept(int index) {
+        return kept[index];
+    }
+
+    public int simplify(double tolerance) {
+        for (int i = 0; i < count; i++) {
+            kept[i] = count <= 2;
+        }
+        if (count <= 2) {
+            return count;
+        }
+        kept[0] = true;
+        kept[count - 1] = true;
+        int result = 2;
+
+        int size = 0;
+        stack[size++] = 0;
+        stack[size++] = count - 1;
+        while (size > 0) {
+            int last = stack[--size];
+            int first = stack[--size];
+            double maxError = 0;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double error = getError(first, last, i);
+                if (error > maxError) {
+                    maxError = error;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxError > tolerance) {
+                kept[index] = true;
+                result += 1;
+                stack[size++] = first;
+                stack[size++] = index;
+                stack[size++] = index;
+                stack[size++] = last;
+            }
+        }
+        return result;
+    }
+
+    private double getError(int first, int last, int index) {
+        long duration = times[last] - times[first];
+        double ratio = duration > 0 ? (double) (times[index] - times[first]) / duration : 0.5;
+        double latitude = latitudes[first] + (latitudes[last] - latitudes[first]) * ratio;
+        double longitude = longitudes[first] + (longitudes[last] - longitudes[first]) * ratio;
+        return distance(latitude, longitude, latitudes[index], longitudes[index]);
+    }
+
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS;
+    }
+
+}
@@ -20,27 +20,109 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.os.Handler;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class TrackingController implements PositionProvider.PositionListener, NetworkManager.NetworkHandler {
 
     private static final String TAG = TrackingController.class.getSimpleName();
     private static final int RETRY_DELAY = 30 * 1000;
     private static final int WAKE_LOCK_TIMEOUT = 60 * 1000;
+    private static final int WRITE_DELAY = 5 * 1000;
+    private static final int WRITE_BUFFER_SIZE = 20;
+    private static final int DEFER_CHECK_DELAY = 5 * 60 * 1000;
+    private static final int TRAFFIC_CHECK_DELAY = 15 * 1000;
+    private static final int MIGRATE_CHUNK = 500;
+    private static final int STREAM_WINDOW = 8;
 
     private boolean isOnline;
     private boolean isWaiting;
+    private boolean isReading;
+    private boolean isReadPending;
+
+    private int inFlight;
+    private long lastId;
+    private long lastReadTime;
+    private boolean isReadScheduled;
+
+    private boolean live;
+    private long backfillDelay;
+    private long liveId;
+    private Position pendingLive;
+    private List<List<Position>> suspended = new ArrayList<List<Position>>();
+
+    private RetryPolicy retryPolicy = new RetryPolicy();
+    private NetworkQualityEstimator qualityEstimator;
+    private UploadScheduler uploadScheduler;
+    private boolean isDeferred;
+    private List<Runnable> retries = new ArrayList<Runnable>();
+
+    private StreamTransport streamTransport;
+    private DatagramTransport datagramTransport;
+    private Map<Long, List<Position>> streamed = new LinkedHashMap<Long, List<Position>>();
+    private long liveSequence;
+    private Position streamedLive;
+
+    private List<Position> writeBuffer = new ArrayList<Position>();
+    private long lastFlushTime;
+    private boolean isFlushScheduled;
+    private boolean isTrimming;
+    private boolean isSimplifying;
+
+    private long coalesceMin;
+    private long coalesceMax;
+    private int coalescePoints;
+    private int pendingPoints;
+    private long pendingTime;
+    private TrafficMonitor trafficMonitor;
+
+    private final Runnable coalesceTask = new Runnable() {
+        @Override
+        public void run() {
+            coalesce();
+        }
+    };
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable readTask = new Runnable() {
+        @Override
+        public void run() {
+            isReadScheduled = false;
+            if (isOnline) {
+                read();
+            }
+        }
+    };
 
     private Context context;
     private Handler handler;
 
-    private String address;
-    private int port;
+    private QueryFormatter formatter;
+    private BinaryFormatter binaryFormatter;
+    private int batchSize;
+    private int window;
+    private boolean compression;
+    private double tolerance;
 
     private PositionProvider positionProvider;
+    private PositionQueue positionQueue;
     private DatabaseHelper databaseHelper;
     private NetworkManager networkManager;
+    private BatteryMonitor batteryMonitor;
 
     private PowerManager.WakeLock wakeLock;
 
@@ -64,21 +146,125 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
         if (preferences.getString(MainActivity.KEY_PROVIDER, null).equals("mixed")) {
             positionProvider = new MixedPositionProvider(context, this);
+        } else if (preferences.getString(MainActivity.KEY_PROVIDER, null).equals("fusion")) {
+            positionProvider = new FusionPositionProvider(context, this);
         } else {
             positionProvider = new SimplePositionProvider(context, this);
         }
-        databaseHelper = new DatabaseHelper(context);
+        File journalDirectory = new File(context.getFilesDir(), PositionJournal.DIRECTORY_NAME);
+        boolean journal = preferences.getString(MainActivity.KEY_QUEUE, "database").equals("journal");
+        if (journal && !PositionJournal.isDeviceIdSupported(preferences.getString(MainActivity.KEY_DEVICE, null))) {
+            Log.w(TAG, "device identifier too long for journal");
+            journal = false;
+        }
+        if (journal) {
+            positionQueue = new PositionJournal(journalDirectory);
+            if (context.getDatabasePath(DatabaseHelper.DATABASE_NAME).exists()) {
+                migrate(new DatabaseHelper(context), positionQueue);
+            }
+        } else {
+            databaseHelper = new DatabaseHelper(context);
+            databaseHelper.setBacklogLimit(
+                    MainActivity.getLong(preferences, MainActivity.KEY_BACKLOG, 0),
+                    MainActivity.getLong(preferences, MainActivity.KEY_BACKLOG_SIZE, 0) * 1024 * 1024,
+                    preferences.getString(MainActivity.KEY_EVICTION, DatabaseHelper.EVICTION_OLDEST));
+            positionQueue = databaseHelper;
+            if (journalDirectory.isDirectory()) {
+                migrate(new PositionJournal(journalDirectory), positionQueue);
+            }
+        }
         networkManager = new NetworkManager(context, this);
         isOnline = networkManager.isOnline();
+        batteryMonitor = new BatteryMonitor(context);
 
-        address = preferences.getString(MainActivity.KEY_ADDRESS, null);
-        port = Integer.parseInt(preferences.getString(MainActivity.KEY_PORT, null));
+        String address = preferences.getString(MainActivity.KEY_ADDRESS, null);
+        int port = Integer.parseInt(preferences.getString(MainActivity.KEY_PORT, null));
+        formatter = new QueryFormatter(address, port);
+        if (preferences.getString(MainActivity.KEY_FORMAT, "text").equals("binary")) {
+            binaryFormatter = new BinaryFormatter();
+        }
+        String transport = preferences.getString(MainActivity.KEY_TRANSPORT, "http");
+        if (transport.equals("tcp")) {
+            streamTransport = new StreamTransport(address, port, new StreamTransport.Listener() {
+                @Override
+                public void onAck(final long sequence) {
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onStreamAck(sequence);
+                        }
+                    });
+                }
+            });
+        } else if (transport.equals("udp")) {
+            datagramTransport = new DatagramTransport(
+                    address, port, preferences.getBoolean(MainActivity.KEY_DATAGRAM_ACK, false));
+        }
+        batchSize = Math.max(1, MainActivity.getInt(preferences, MainActivity.KEY_BATCH, 1));
+        window = Math.max(1, MainActivity.getInt(preferences, MainActivity.KEY_WINDOW, 1));
+        if (streamTransport != null) {
+            // Batches on the stream are only waiting for an ack, so never run it stop-and-wait
+            window = Math.max(window, STREAM_WINDOW);
+        }
+        if (batchSize > 1 && preferences.getBoolean(MainActivity.KEY_ADAPTIVE_BATCH, false)) {
+            qualityEstimator = new NetworkQualityEstimator(batchSize);
+        }
+        compression = preferences.getBoolean(MainActivity.KEY_COMPRESSION, false);
+        tolerance = MainActivity.getDouble(preferences, MainActivity.KEY_SIMPLIFY, 0);
+        // Datagrams only ever carry the live lane, so UDP turns it on
+        live = preferences.getBoolean(MainActivity.KEY_LIVE, false) || datagramTransport != null;
+        backfillDelay = MainActivity.getLong(preferences, MainActivity.KEY_BACKFILL, 0) * 1000;
+        coalesceMax = MainActivity.getLong(preferences, MainActivity.KEY_COALESCE, 0) * 1000;
+        coalesceMin = MainActivity.getLong(preferences, MainActivity.KEY_COALESCE_MIN, 0) * 1000;
+        coalescePoints = MainActivity.getInt(preferences, MainActivity.KEY_COALESCE_POINTS, 0);
+        if (coalesceMax > 0) {
+            trafficMonitor = new TrafficMonitor();
+        }
+        String deferPolicy = preferences.getString(MainActivity.KEY_DEFER, UploadScheduler.POLICY_NONE);
+        if (!deferPolicy.equals(UploadScheduler.POLICY_NONE)) {
+            uploadScheduler = new UploadScheduler(deferPolicy,
+                    MainActivity.getLong(preferences, MainActivity.KEY_DEFER_THRESHOLD, 1000),
+                    MainActivity.getLong(preferences, MainActivity.KEY_DEFER_AGE, 24) * 60 * 60 * 1000);
+        }
 
         PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
         wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, getClass().getName());
     }
 
+    // Moves positions left in the previously selected storage, runs before any other storage task
+    private static void migrate(final PositionQueue source, final PositionQueue target) {
+        new DatabaseHelper.DatabaseAsyncTask<Void>(new DatabaseHelper.DatabaseHandler<Void>() {
+            @Override
+            public void onComplete(boolean success, Void result) {
+                if (!success) {
+                    Log.w(TAG, "storage migration failed");
+                }
+            }
+        }) {
+            @Override
+            protected Void executeMethod() {
+                List<Position> positions;
+                while (!(positions = source.selectPositions(0, MIGRATE_CHUNK)).isEmpty()) {
+                    List<Long> ids = new ArrayList<Long>();
+                    for (Position position : positions) {
+                        ids.add(position.getId());
+                    }
+                    target.insertPositions(positions);
+                    source.deletePositions(ids);
+                }
+                return null;
+            }
+        }.execute();
+    }
+
     public void start() {
+        batteryMonitor.start();
+        if (streamTransport != null) {
+            streamTransport.start();
+        }
+        if (datagramTransport != null) {
+            datagramTransport.start();
+        }
         if (isOnline) {
             read();
         }
@@ -89,7 +275,27 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
     public void stop() {
         networkManager.stop();
         positionProvider.stopUpdates();
+        batteryMonitor.stop();
+        if (streamTransport != null) {
+            streamTransport.stop();
+            streamed.clear();
+            liveSequence = 0;
+            streamedLive = null;
+        }
+        if (datagramTransport != null) {
+            datagramTransport.stop();
+        }
         handler.removeCallbacksAndMessages(null);
+        isReadScheduled = false;
+        retries.clear();
+        if (!writeBuffer.isEmpty()) {
+            try {
+                positionQueue.insertPositions(writeBuffer);
+            } catch (RuntimeException error) {
+                Log.w(TAG, error);
+            }
+            writeBuffer.clear();
+        }
     }
 
     @Override
@@ -103,19 +309,96 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
     @Override
     public void onNetworkUpdate(boolean isOnline) {
         StatusActivity.addMessage(context.getString(R.string.status_connectivity_change));
-        if (!this.isOnline && isOnline) {
+        boolean wasOnline = this.isOnline;
+        this.isOnline = isOnline;
+        if (isOnline) {
+            if (!wasOnline) {
+                retryPolicy.reset();
+                updateRetryStatistic();
+                if (streamTransport != null) {
+                    streamTransport.reconnect();
+                }
+                for (List<Position> positions : suspended) {
+                    send(positions);
+                }
+                suspended.clear();
+            }
+            for (Runnable retry : new ArrayList<Runnable>(retries)) {
+                handler.removeCallbacks(retry);
+                handler.post(retry);
+            }
+            handler.removeCallbacks(readTask);
+            isReadScheduled = false;
+            pendingPoints = 0;
             read();
         }
-        this.isOnline = isOnline;
     }
 
     //
     // State transition examples:
     //
-    // write -> read -> send -> delete -> read
+    // write -> flush -> read -> send -> delete -> read
     //
     // read -> send -> retry -> read -> send
     //
+    // With batch size above one, read selects several positions and send
+    // uploads them in a single request.
+    //
+    // Up to window requests can be in flight. Read keeps selecting positions
+    // after the last one handed to send until the window is full, and a failed
+    // request only retries itself:
+    //
+    // read -> send -> read -> send -> delete -> read
+    //                           \-> retry -> send
+    //
+    // Failed backlog sends back off exponentially. After repeated failures read
+    // stops until the device comes back online or a successful retry closes
+    // the circuit. Live lane failures do not count towards the threshold.
+    //
+    // With adaptive batching the batch size follows the link quality estimate,
+    // and a failed batch larger than the current estimate is split on retry.
+    //
+    // When the backlog is limited, every flush also starts trimming, one chunk
+    // per storage task, until the database is back under the limit:
+    //
+    // flush -> trim -> trim -> trim
+    //
+    // Simplification of the unsent backlog is chained the same way and only
+    // runs while there is at least one full window of unsent positions.
+    //
+    // With the live lane, the newest position of every flush is sent right
+    // away while read keeps draining older rows, at most once per backfill
+    // delay. Read skips the live position, and a failed live send falls back
+    // to the normal retry path if read has already passed it:
+    //
+    // flush -> send live -> delete live
+    //      \-> read -> send -> delete -> read
+    //
+    // In coalescing mode an idle uploader does not read after every flush.
+    // Positions accumulate until the maximum latency or point count is
+    // reached, or until other applications use the mobile radio after the
+    // minimum latency has passed:
+    //
+    // flush -> coalesce -> flush -> coalesce -> read -> send -> delete -> read
+    //
+    // A large backlog can be held back until the network is unmetered and/or
+    // the device is charging. Read then checks again every few minutes and on
+    // every connectivity change. Meanwhile the newest position of every flush
+    // still goes out on the live lane, even when the live lane is disabled.
+    //
+    // With the TCP transport send only writes the batch to the stream. The
+    // transport resends everything unacknowledged after a reconnect, and the
+    // server acknowledgement completes whole batches in order. The live lane
+    // shares the stream, and stream failures never reach the retry policy.
+    // The window is raised to at least STREAM_WINDOW batches:
+    //
+    // read -> send -> read -> send -> ack -> delete -> read
+    //
+    // The UDP transport only carries the live lane, which is always enabled
+    // with it. Each live position goes out as a datagram and completes like
+    // an HTTP request, after acknowledgement when enabled. The backlog stays
+    // on HTTP, so a lost datagram never takes stored positions with it.
+    //
 
     private void log(String action, Position position) {
         if (position != null) {
@@ -128,17 +411,133 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
         Log.d(TAG, action);
     }
 
+    private void logPositions(String action, List<Position> positions) {
+        if (positions.size() == 1) {
+            log(action, positions.get(0));
+        } else {
+            Log.d(TAG, action + " (" + positions.size() + " positions)");
+        }
+    }
+
     private void write(Position position) {
         log("write", position);
+        writeBuffer.add(position);
+        if (writeBuffer.size() >= WRITE_BUFFER_SIZE) {
+            flush();
+        } else if (!isFlushScheduled) {
+            long delay = lastFlushTime + WRITE_DELAY - SystemClock.elapsedRealtime();
+            if (delay > 0) {
+                isFlushScheduled = true;
+                handler.postDelayed(flushTask, delay);
+            } else {
+                flush();
+            }
+        }
+    }
+
+    private void flush() {
+        handler.removeCallbacks(flushTask);
+        isFlushScheduled = false;
+        lastFlushTime = SystemClock.elapsedRealtime();
+        final List<Position> positions = writeBuffer;
+        writeBuffer = new ArrayList<Position>();
+        logPositions("flush", positions);
         lock();
-        databaseHelper.insertPositionAsync(position, new DatabaseHelper.DatabaseHandler<Void>() {
+        positionQueue.insertPositionsAsync(positions, new DatabaseHelper.DatabaseHandler<Void>() {
             @Override
             public void onComplete(boolean success, Void result) {
                 if (success) {
+                    if ((live || isDeferred) && isOnline && !positions.isEmpty()) {
+                        sendLive(positions.get(positions.size() - 1));
+                    }
                     if (isOnline && isWaiting) {
-                        read();
-                        isWaiting = false;
+                        if (coalesceMax > 0) {
+                            if (pendingPoints == 0) {
+                                pendingTime = SystemClock.elapsedRealtime();
+                            }
+                            pendingPoints += positions.size();
+                            coalesce();
+                        } else {
+                            read();
+                            isWaiting = false;
+                        }
                     }
+                    simplify();
+                    trim();
+                } else {
+                    retryFlush(positions);
+                }
+                unlock();
+            }
+        });
+    }
+
+    private void retryFlush(List<Position> positions) {
+        logPositions("retry", positions);
+        positions.addAll(writeBuffer);
+        writeBuffer = positions;
+        handler.removeCallbacks(flushTask);
+        isFlushScheduled = true;
+        handler.postDelayed(flushTask, RETRY_DELAY);
+    }
+
+    private void simplify() {
+        if (databaseHelper == null || tolerance <= 0 || isSimplifying) {
+            return;
+        }
+        lock();
+        isSimplifying = true;
+        databaseHelper.simplifyBacklogAsync(tolerance, new DatabaseHelper.DatabaseHandler<Boolean>() {
+            @Override
+            public void onComplete(boolean success, Boolean result) {
+                isSimplifying = false;
+                if (success && result) {
+                    StatusActivity.setStatistic(R.string.status_statistics_simplified,
+                            String.valueOf(databaseHelper.getSimplified()));
+                    simplify();
+                } else if (!success) {
+                    Log.w(TAG, "backlog simplification failed");
+                }
+                unlock();
+            }
+        });
+    }
+
+    private void coalesce() {
+        handler.removeCallbacks(coalesceTask);
+        if (!isOnline || !isWaiting || pendingPoints == 0) {
+            return;
+        }
+        long waited = SystemClock.elapsedRealtime() - pendingTime;
+        boolean otherTraffic = trafficMonitor.hasOtherTraffic();
+        if (waited >= coalesceMax
+                || coalescePoints > 0 && pendingPoints >= coalescePoints
+                || waited >= coalesceMin && otherTraffic) {
+            log("coalesced " + pendingPoints, null);
+            pendingPoints = 0;
+            isWaiting = false;
+            read();
+        } else {
+            handler.postDelayed(coalesceTask, Math.min(TRAFFIC_CHECK_DELAY, coalesceMax - waited));
+        }
+    }
+
+    private void trim() {
+        if (databaseHelper == null || isTrimming) {
+            return;
+        }
+        lock();
+        isTrimming = true;
+        databaseHelper.trimBacklogAsync(new DatabaseHelper.DatabaseHandler<Boolean>() {
+            @Override
+            public void onComplete(boolean success, Boolean result) {
+                isTrimming = false;
+                if (success && result) {
+                    StatusActivity.setStatistic(R.string.status_statistics_backlog,
+                            databaseHelper.getSize() + " positions, " + databaseHelper.getEvicted() + " evicted");
+                    trim();
+                } else if (!success) {
+                    Log.w(TAG, "backlog trim failed");
                 }
                 unlock();
             }
@@ -146,60 +545,281 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
     }
 
     private void read() {
+        if (isReading) {
+            isReadPending = true;
+            return;
+        }
+        if (inFlight >= window || retryPolicy.isOpen() || isReadScheduled) {
+            return;
+        }
+        long delay = lastReadTime + backfillDelay - SystemClock.elapsedRealtime();
+        if (backfillDelay > 0 && delay > 0) {
+            isReadScheduled = true;
+            handler.postDelayed(readTask, delay);
+            return;
+        }
+        if (uploadScheduler != null) {
+            boolean allowed = uploadScheduler.isAllowed(positionQueue.getSize(),
+                    networkManager.isMetered(), BatteryMonitor.isCharging(context), SystemClock.elapsedRealtime());
+            StatusActivity.setStatistic(R.string.status_statistics_upload,
+                    context.getString(allowed ? R.string.status_active : R.string.status_deferred));
+            isDeferred = !allowed;
+            if (!allowed) {
+                log("defer", null);
+                isReadScheduled = true;
+                handler.postDelayed(readTask, DEFER_CHECK_DELAY);
+                return;
+            }
+        }
+        lastReadTime = SystemClock.elapsedRealtime();
         log("read", null);
         lock();
-        databaseHelper.selectPositionAsync(new DatabaseHelper.DatabaseHandler<Position>() {
+        isReading = true;
+        final int limit = qualityEstimator != null ? qualityEstimator.getBatchSize() : batchSize;
+        positionQueue.selectPositionsAsync(lastId, limit, new DatabaseHelper.DatabaseHandler<List<Position>>() {
             @Override
-            public void onComplete(boolean success, Position result) {
+            public void onComplete(boolean success, List<Position> result) {
+                isReading = false;
                 if (success) {
-                    if (result != null) {
-                        send(result);
-                    } else {
+                    List<Position> batch = result;
+                    if (binaryFormatter != null) {
+                        batch = splitAtDeviceId(result);
+                    }
+                    if (!batch.isEmpty()) {
+                        lastId = batch.get(batch.size() - 1).getId();
+                    }
+                    List<Position> positions = batch;
+                    if (liveId != 0) {
+                        positions = new ArrayList<Position>();
+                        for (Position position : batch) {
+                            if (position.getId() != liveId) {
+                                positions.add(position);
+                            }
+                        }
+                    }
+                    if (!positions.isEmpty()) {
+                        inFlight += 1;
+                        send(positions);
+                    }
+                    if (batch.size() == result.size() && result.size() < limit) {
                         isWaiting = true;
+                    } else {
+                        isReadPending = true;
                     }
                 } else {
-                    retry();
+                    retryRead();
+                }
+                if (isReadPending) {
+                    isReadPending = false;
+                    read();
                 }
                 unlock();
             }
         });
     }
 
-    private void delete(Position position) {
-        log("delete", position);
+    // Binary batches carry a single device id, so a batch ends where the id changes
+    private static List<Position> splitAtDeviceId(List<Position> positions) {
+        for (int i = 1; i < positions.size(); i++) {
+            String deviceId = positions.get(i).getDeviceId();
+            if (deviceId == null ? positions.get(0).getDeviceId() != null
+                    : !deviceId.equals(positions.get(0).getDeviceId())) {
+                return new ArrayList<Position>(positions.subList(0, i));
+            }
+        }
+        return positions;
+    }
+
+    private void delete(final List<Position> positions) {
+        logPositions("delete", positions);
         lock();
-        databaseHelper.deletePositionAsync(position.getId(), new DatabaseHelper.DatabaseHandler<Void>() {
+        List<Long> ids = new ArrayList<Long>();
+        for (Position position : positions) {
+            ids.add(position.getId());
+        }
+        positionQueue.deletePositionsAsync(ids, new DatabaseHelper.DatabaseHandler<Void>() {
             @Override
             public void onComplete(boolean success, Void result) {
                 if (success) {
+                    inFlight -= 1;
                     read();
                 } else {
-                    retry();
+                    retryDelete(positions);
                 }
                 unlock();
             }
         });
     }
 
-    private void send(final Position position) {
-        log("send", position);
+    private void send(final List<Position> positions) {
+        logPositions("send", positions);
+        if (streamTransport != null) {
+            long sequence = 0;
+            for (Position position : positions) {
+                sequence = streamTransport.send(position.getId(), formatter.formatQuery(position));
+            }
+            streamed.put(sequence, positions);
+            return;
+        }
         lock();
-        String request = ProtocolFormatter.formatRequest(address, port, position);
-        RequestManager.sendRequestAsync(request, new RequestManager.RequestHandler() {
+        byte[] content = null;
+        String body = null;
+        if (binaryFormatter != null) {
+            content = binaryFormatter.formatBatch(positions);
+        } else if (batchSize > 1) {
+            body = formatter.formatBatchRequest(positions);
+        }
+        final long length = content != null ? content.length : body != null ? body.length() : 0;
+        final long startTime = SystemClock.elapsedRealtime();
+        RequestManager.RequestHandler handler = new RequestManager.RequestHandler() {
             @Override
             public void onComplete(boolean success) {
                 if (success) {
-                    delete(position);
+                    retryPolicy.onSuccess();
+                    updateRetryStatistic();
+                    if (qualityEstimator != null) {
+                        qualityEstimator.onSuccess(positions.size(), length, SystemClock.elapsedRealtime() - startTime);
+                        updateQualityStatistic();
+                    }
+                    delete(positions);
                 } else {
                     StatusActivity.addMessage(context.getString(R.string.status_send_fail));
-                    retry();
+                    retryPolicy.onFailure();
+                    if (qualityEstimator != null) {
+                        qualityEstimator.onFailure();
+                        updateQualityStatistic();
+                    }
+                    retrySend(positions);
                 }
                 unlock();
             }
+        };
+        if (content != null) {
+            RequestManager.sendRequestAsync(
+                    formatter.getUrl(), content, BinaryFormatter.CONTENT_TYPE, compression, handler);
+        } else if (body != null) {
+            RequestManager.sendRequestAsync(formatter.getUrl(), body, compression, handler);
+        } else {
+            RequestManager.sendRequestAsync(formatter.formatRequest(positions.get(0)), handler);
+        }
+    }
+
+    private void onStreamAck(long sequence) {
+        Iterator<Map.Entry<Long, List<Position>>> iterator = streamed.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, List<Position>> entry = iterator.next();
+            if (entry.getKey() > sequence) {
+                break;
+            }
+            iterator.remove();
+            delete(entry.getValue());
+        }
+        if (streamedLive != null && liveSequence <= sequence) {
+            Position position = streamedLive;
+            streamedLive = null;
+            deleteLive(position);
+        }
+    }
+
+    private void updateQualityStatistic() {
+        StatusActivity.setStatistic(R.string.status_statistics_quality, qualityEstimator.toString());
+    }
+
+    private void sendLive(final Position position) {
+        if (position.getId() <= lastId || retryPolicy.isOpen()) {
+            return;
+        }
+        if (liveId != 0) {
+            pendingLive = position;
+            return;
+        }
+        log("send live", position);
+        liveId = position.getId();
+        if (databaseHelper != null) {
+            databaseHelper.setLiveId(liveId);
+        }
+        if (streamTransport != null) {
+            streamedLive = position;
+            liveSequence = streamTransport.send(position.getId(), formatter.formatQuery(position));
+            return;
+        }
+        lock();
+        RequestManager.RequestHandler handler = new RequestManager.RequestHandler() {
+            @Override
+            public void onComplete(boolean success) {
+                if (success) {
+                    deleteLive(position);
+                } else {
+                    StatusActivity.addMessage(context.getString(R.string.status_send_fail));
+                    finishLive();
+                    if (position.getId() <= lastId) {
+                        List<Position> positions = new ArrayList<Position>();
+                        positions.add(position);
+                        inFlight += 1;
+                        retrySend(positions);
+                    }
+                }
+                unlock();
+            }
+        };
+        if (datagramTransport != null) {
+            sendDatagram(position, handler);
+        } else {
+            RequestManager.sendRequestAsync(formatter.formatRequest(position), handler);
+        }
+    }
+
+    private void sendDatagram(Position position, final RequestManager.RequestHandler requestHandler) {
+        List<Long> ids = new ArrayList<Long>();
+        List<String> queries = new ArrayList<String>();
+        ids.add(position.getId());
+        queries.add(formatter.formatQuery(position));
+        datagramTransport.send(ids, queries, new RequestManager.RequestHandler() {
+            @Override
+            public void onComplete(final boolean success) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        StatusActivity.setStatistic(R.string.status_statistics_datagram, datagramTransport.toString());
+                        requestHandler.onComplete(success);
+                    }
+                });
+            }
+        });
+    }
+
+    private void deleteLive(final Position position) {
+        log("delete live", position);
+        lock();
+        List<Long> ids = new ArrayList<Long>();
+        ids.add(position.getId());
+        positionQueue.deletePositionsAsync(ids, new DatabaseHelper.DatabaseHandler<Void>() {
+            @Override
+            public void onComplete(boolean success, Void result) {
+                if (!success) {
+                    Log.w(TAG, "live delete failed");
+                }
+                finishLive();
+                unlock();
+            }
         });
     }
 
-    private void retry() {
+    private void finishLive() {
+        liveId = 0;
+        if (databaseHelper != null) {
+            databaseHelper.setLiveId(0);
+        }
+        if (pendingLive != null) {
+            Position position = pendingLive;
+            pendingLive = null;
+            if (isOnline) {
+                sendLive(position);
+            }
+        }
+    }
+
+    private void retryRead() {
         log("retry", null);
         handler.postDelayed(new Runnable() {
             @Override
@@ -211,4 +831,44 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
         }, RETRY_DELAY);
     }
 
+    private void updateRetryStatistic() {
+        StatusActivity.setStatistic(R.string.status_statistics_retry, retryPolicy.toString());
+    }
+
+    private void retrySend(final List<Position> positions) {
+        logPositions("retry", positions);
+        Runnable retry = new Runnable() {
+            @Override
+            public void run() {
+                retries.remove(this);
+                if (isOnline && qualityEstimator != null && positions.size() > qualityEstimator.getBatchSize()) {
+                    int size = qualityEstimator.getBatchSize();
+                    for (int i = 0; i < positions.size(); i += size) {
+                        if (i > 0) {
+                            inFlight += 1;
+                        }
+                        send(new ArrayList<Position>(positions.subList(i, Math.min(i + size, positions.size()))));
+                    }
+                } else if (isOnline) {
+                    send(positions);
+                } else {
+                    suspended.add(positions);
+                }
+            }
+        };
+        retries.add(retry);
+        handler.postDelayed(retry, retryPolicy.getDelay());
+        updateRetryStatistic();
+    }
+
+    private void retryDelete(final List<Position> positions) {
+        logPositions("retry", positions);
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                delete(positions);
+            }
+        }, RETRY_DELAY);
+    }
+
 }
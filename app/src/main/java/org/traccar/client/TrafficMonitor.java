@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.annotation.TargetApi;
+import android.net.TrafficStats;
+import android.os.Build;
+import android.os.Process;
+
+public class TrafficMonitor {
+
+    //
+    // Mobile traffic of other applications since the previous check. If some
+    // other application just used the radio, it is still in its high power
+    // state and an upload now costs little extra energy.
+    //
+
+    private static final long THRESHOLD = 2048;
+
+    private long lastOther = -1;
+
+    @TargetApi(Build.VERSION_CODES.FROYO)
+    private static long getOtherTraffic() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.FROYO) {
+            return -1;
+        }
+        long total = TrafficStats.getMobileTxBytes();
+        long received = TrafficStats.getMobileRxBytes();
+        int uid = Process.myUid();
+        long own = TrafficStats.getUidTxBytes(uid);
+        long ownReceived = TrafficStats.getUidRxBytes(uid);
+        if (total == TrafficStats.UNSUPPORTED || received == TrafficStats.UNSUPPORTED
+                || own == TrafficStats.UNSUPPORTED || ownReceived == TrafficStats.UNSUPPORTED) {
+            return -1;
+        }
+        return total + received - own - ownReceived;
+    }
+
+    public boolean hasOtherTraffic() {
+        long other = getOtherTraffic();
+        boolean result = other >= 0 && lastOther >= 0 && other - lastOther >= THRESHOLD;
+        lastOther = other;
+        return result;
+    }
+
+}
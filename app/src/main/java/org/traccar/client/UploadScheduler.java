@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class UploadScheduler {
+
+    //
+    // Stored positions are held back while the backlog is at least threshold
+    // positions and the connection or power state does not match the policy.
+    // Once held back for maxDeferral, uploading starts anyway and continues
+    // until the backlog drops below the threshold.
+    //
+
+    public static final String POLICY_NONE = "none";
+    public static final String POLICY_UNMETERED = "unmetered";
+    public static final String POLICY_CHARGING = "charging";
+    public static final String POLICY_EITHER = "either";
+    public static final String POLICY_BOTH = "both";
+
+    private final String policy;
+    private final long threshold;
+    private final long maxDeferral;
+
+    private long deferredSince;
+
+    public UploadScheduler(String policy, long threshold, long maxDeferral) {
+        this.policy = policy;
+        this.threshold = threshold;
+        this.maxDeferral = maxDeferral;
+    }
+
+    private boolean isPreferred(boolean metered, boolean charging) {
+        switch (policy) {
+            case POLICY_UNMETERED:
+                return !metered;
+            case POLICY_CHARGING:
+                return charging;
+            case POLICY_EITHER:
+                return !metered || charging;
+            case POLICY_BOTH:
+                return !metered && charging;
+            default:
+                return true;
+        }
+    }
+
+    public boolean isAllowed(long backlog, boolean metered, boolean charging, long now) {
+        if (backlog < threshold || isPreferred(metered, charging)) {
+            deferredSince = 0;
+            return true;
+        }
+        if (deferredSince == 0) {
+            deferredSince = now;
+        }
+        return maxDeferral > 0 && now - deferredSince >= maxDeferral;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WorkQueue {
+
+    public static abstract class Task<T> implements Runnable {
+
+        private final Handler handler = new Handler();
+
+        private WorkQueue queue;
+        private long queueTime;
+
+        protected abstract T doInBackground();
+
+        protected abstract void onPostExecute(T result);
+
+        @Override
+        public void run() {
+            queue.onStart(SystemClock.elapsedRealtime() - queueTime);
+            final T result;
+            try {
+                result = doInBackground();
+            } finally {
+                queue.onComplete();
+            }
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onPostExecute(result);
+                }
+            });
+        }
+
+        public void execute(WorkQueue queue) {
+            this.queue = queue;
+            queueTime = SystemClock.elapsedRealtime();
+            queue.executor.execute(this);
+        }
+    }
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private volatile long maxWaitTime;
+
+    public WorkQueue(final String name, int threads) {
+        this.name = name;
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, name + " #" + count.incrementAndGet());
+                    }
+                });
+    }
+
+    private void onStart(long waitTime) {
+        active.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+        if (waitTime > maxWaitTime) {
+            maxWaitTime = waitTime;
+        }
+    }
+
+    private void onComplete() {
+        active.decrementAndGet();
+        completed.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getAverageWaitTime() {
+        long count = completed.get();
+        return count > 0 ? totalWaitTime.get() / count : 0;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return getQueueSize() + " queued, " + getActiveCount() + " active, " + getCompletedCount() + " done, "
+                + getAverageWaitTime() + " / " + getMaxWaitTime() + " ms wait";
+    }
+
+}
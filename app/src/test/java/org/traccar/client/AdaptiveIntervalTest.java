@@ -0,0 +1,39 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class AdaptiveIntervalTest {
+
+    @Test
+    public void testBands() throws Exception {
+
+        AdaptiveInterval adaptiveInterval = new AdaptiveInterval(60 * 1000);
+
+        assertEquals(60 * 1000, adaptiveInterval.getPeriod());
+
+        assertFalse(adaptiveInterval.update(35));
+        assertTrue(adaptiveInterval.update(35));
+        assertEquals(15 * 1000, adaptiveInterval.getPeriod());
+
+        assertFalse(adaptiveInterval.update(22));
+        assertFalse(adaptiveInterval.update(22));
+        assertEquals(3, adaptiveInterval.getBand());
+
+        assertFalse(adaptiveInterval.update(0));
+        assertFalse(adaptiveInterval.update(30));
+        assertFalse(adaptiveInterval.update(0));
+        assertTrue(adaptiveInterval.update(0));
+        assertEquals(240 * 1000, adaptiveInterval.getPeriod());
+
+    }
+
+}
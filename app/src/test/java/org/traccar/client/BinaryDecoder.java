@@ -0,0 +1,74 @@
+package org.traccar.client;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class BinaryDecoder {
+
+    private final byte[] buffer;
+    private int offset;
+
+    public BinaryDecoder(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    private long readVarint() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private long readDelta(long previous) {
+        long value = readVarint();
+        return previous + ((value >>> 1) ^ -(value & 1));
+    }
+
+    public List<Position> decode() throws Exception {
+        if (readVarint() != BinaryFormatter.VERSION) {
+            throw new IllegalArgumentException("Unsupported version");
+        }
+
+        int deviceIdLength = (int) readVarint();
+        String deviceId = new String(buffer, offset, deviceIdLength, "UTF-8");
+        offset += deviceIdLength;
+
+        long time = 0, latitude = 0, longitude = 0, altitude = 0, speed = 0, course = 0, battery = 0;
+
+        List<Position> positions = new ArrayList<Position>();
+        long count = readVarint();
+        for (int i = 0; i < count; i++) {
+            time = readDelta(time);
+            latitude = readDelta(latitude);
+            longitude = readDelta(longitude);
+            altitude = readDelta(altitude);
+            speed = readDelta(speed);
+            course = readDelta(course);
+            battery = readDelta(battery);
+
+            Position position = new Position();
+            position.setDeviceId(deviceId);
+            position.setTime(new Date(time * 1000));
+            position.setLatitude(latitude / BinaryFormatter.COORDINATE_SCALE);
+            position.setLongitude(longitude / BinaryFormatter.COORDINATE_SCALE);
+            position.setAltitude(altitude / BinaryFormatter.VALUE_SCALE);
+            position.setSpeed(speed / BinaryFormatter.VALUE_SCALE);
+            position.setCourse(course / BinaryFormatter.VALUE_SCALE);
+            position.setBattery(battery / BinaryFormatter.VALUE_SCALE);
+            positions.add(position);
+        }
+
+        if (offset != buffer.length) {
+            throw new IllegalArgumentException("Trailing data");
+        }
+
+        return positions;
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.traccar.client;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class BinaryFormatterTest {
+
+    @Test
+    public void testFormatBatch() throws Exception {
+
+        List<Position> positions = new ArrayList<Position>();
+        for (int i = 0; i < 100; i++) {
+            Position position = new Position("123456789012345", new Location("gps"), 80 - i * 0.1);
+            position.setTime(new Date(1445000000000L + i * 1000));
+            position.setLatitude(55.751244 + i * 0.000015);
+            position.setLongitude(-37.618423 - i * 0.000021);
+            position.setAltitude(150.5);
+            position.setSpeed(27.3 + (i % 3) * 0.1);
+            position.setCourse(270.4);
+            positions.add(position);
+        }
+
+        byte[] data = new BinaryFormatter().formatBatch(positions);
+        String text = new QueryFormatter("localhost", 5055).formatBatchRequest(positions);
+
+        assertTrue(data.length * 10 < text.length());
+
+        List<Position> decoded = new BinaryDecoder(data).decode();
+
+        assertEquals(positions.size(), decoded.size());
+        for (int i = 0; i < positions.size(); i++) {
+            Position expected = positions.get(i);
+            Position actual = decoded.get(i);
+            assertEquals(expected.getDeviceId(), actual.getDeviceId());
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getLatitude(), actual.getLatitude(), 0.000001);
+            assertEquals(expected.getLongitude(), actual.getLongitude(), 0.000001);
+            assertEquals(expected.getAltitude(), actual.getAltitude(), 0.1);
+            assertEquals(expected.getSpeed(), actual.getSpeed(), 0.1);
+            assertEquals(expected.getCourse(), actual.getCourse(), 0.1);
+            assertEquals(expected.getBattery(), actual.getBattery(), 0.1);
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class CompressorTest {
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        inputStream.close();
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] createContent(int size) {
+        Random random = new Random(1);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return content;
+    }
+
+    @Test
+    public void testBelowThreshold() throws Exception {
+
+        assertNull(Compressor.compress(new byte[0]));
+        assertNull(Compressor.compress(createContent(Compressor.THRESHOLD - 1)));
+
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+
+        Compressor compressor = new Compressor();
+
+        assertArrayEquals(new byte[0], gunzip(compressor.gzip(new byte[0])));
+
+        byte[] content = createContent(100000);
+        assertArrayEquals(content, gunzip(compressor.gzip(content)));
+        assertArrayEquals(content, gunzip(compressor.gzip(content)));
+
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        byte[] content = createContent(Compressor.THRESHOLD);
+        byte[] compressed = Compressor.compress(content);
+        assertNotNull(compressed);
+        assertArrayEquals(content, gunzip(compressed));
+
+        content = createContent(100000);
+        compressed = Compressor.compress(content);
+        assertNotNull(compressed);
+        assertArrayEquals(content, gunzip(compressed));
+
+    }
+
+}
@@ -10,10 +10,14 @@ import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricGradleTestRunner.class)
 @Config(constants = BuildConfig.class, sdk = 21)
@@ -43,4 +47,185 @@ public class DatabaseHelperTest {
 
     }
 
+    @Test
+    public void testBatch() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+
+        for (int i = 0; i < 5; i++) {
+            Position position = new Position("123456789012345", new Location("gps"), 0);
+            position.setTime(new Date(i * 1000));
+            databaseHelper.insertPosition(position);
+        }
+
+        List<Position> positions = databaseHelper.selectPositions(3);
+
+        assertEquals(3, positions.size());
+        assertEquals(0, positions.get(0).getTime().getTime());
+        assertEquals(2000, positions.get(2).getTime().getTime());
+
+        List<Long> ids = new ArrayList<Long>();
+        for (Position position : positions) {
+            ids.add(position.getId());
+        }
+        databaseHelper.deletePositions(ids);
+
+        positions = databaseHelper.selectPositions(positions.get(2).getId(), 3);
+
+        assertEquals(2, positions.size());
+        assertEquals(3000, positions.get(0).getTime().getTime());
+
+        assertEquals(2, databaseHelper.deletePositions(positions.get(0).getId(), positions.get(1).getId()));
+
+        assertNull(databaseHelper.selectPosition());
+
+    }
+
+    @Test
+    public void testTrimBytes() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+        insertPositions(databaseHelper, 5000);
+
+        long limit = databaseHelper.getBytes() / 2;
+        databaseHelper.setBacklogLimit(100000, limit, DatabaseHelper.EVICTION_THIN);
+        while (databaseHelper.trimBacklog());
+
+        assertTrue(databaseHelper.getBytes() <= limit);
+        assertTrue(databaseHelper.getSize() > 1500);
+
+        List<Position> positions = databaseHelper.selectPositions(0, 5000);
+
+        assertEquals(databaseHelper.getSize(), positions.size());
+        assertEquals(4999000, positions.get(positions.size() - 1).getTime().getTime());
+        assertEquals((positions.size() - 1) * 1000L, positions.get(positions.size() - 1).getTime().getTime()
+                - positions.get(0).getTime().getTime());
+
+    }
+
+    private static void insertPositions(DatabaseHelper databaseHelper, int count) {
+        for (int i = 0; i < count; i++) {
+            Position position = new Position("123456789012345", new Location("gps"), 0);
+            position.setTime(new Date(i * 1000));
+            databaseHelper.insertPosition(position);
+        }
+    }
+
+    @Test
+    public void testTrimOldest() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+        insertPositions(databaseHelper, 10);
+
+        databaseHelper.setBacklogLimit(4, 0, DatabaseHelper.EVICTION_OLDEST);
+        while (databaseHelper.trimBacklog());
+
+        assertEquals(4, databaseHelper.getSize());
+        assertEquals(6, databaseHelper.getEvicted());
+        assertEquals(6000, databaseHelper.selectPosition().getTime().getTime());
+
+    }
+
+    @Test
+    public void testDeleteEvicted() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            Position position = new Position("123456789012345", new Location("gps"), 0);
+            position.setTime(new Date(i * 1000));
+            databaseHelper.insertPosition(position);
+            ids.add(position.getId());
+        }
+
+        databaseHelper.setBacklogLimit(4, 0, DatabaseHelper.EVICTION_OLDEST);
+        while (databaseHelper.trimBacklog());
+
+        databaseHelper.deletePositions(ids.subList(0, 8));
+
+        assertEquals(2, databaseHelper.getSize());
+        assertEquals(8000, databaseHelper.selectPosition().getTime().getTime());
+
+    }
+
+    @Test
+    public void testTrimThin() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+        insertPositions(databaseHelper, 10);
+
+        List<Position> selected = databaseHelper.selectPositions(2);
+
+        databaseHelper.setBacklogLimit(6, 0, DatabaseHelper.EVICTION_THIN);
+        while (databaseHelper.trimBacklog());
+
+        List<Position> positions = databaseHelper.selectPositions(0, 10);
+
+        assertEquals(6, positions.size());
+        assertEquals(selected.get(1).getId(), positions.get(1).getId());
+        assertEquals(2000, positions.get(2).getTime().getTime());
+        assertEquals(4000, positions.get(3).getTime().getTime());
+
+    }
+
+    @Test
+    public void testTrimBucket() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+        insertPositions(databaseHelper, 150);
+
+        databaseHelper.setBacklogLimit(10, 0, DatabaseHelper.EVICTION_BUCKET);
+        while (databaseHelper.trimBacklog());
+
+        List<Position> positions = databaseHelper.selectPositions(0, 10);
+
+        assertEquals(3, positions.size());
+        assertEquals(0, positions.get(0).getTime().getTime());
+        assertEquals(60000, positions.get(1).getTime().getTime());
+        assertEquals(120000, positions.get(2).getTime().getTime());
+
+    }
+
+    @Test
+    public void testSimplify() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+        insertPositions(databaseHelper, 1200);
+
+        while (databaseHelper.simplifyBacklog(5));
+
+        assertEquals(1200 - 996, databaseHelper.getSize());
+        assertEquals(996, databaseHelper.getSimplified());
+
+    }
+
+    @Test
+    public void testSimplifyTrack() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+
+        // Zigzag with a corner every 100 points, points between corners move linearly
+        for (int i = 0; i < 1000; i++) {
+            int step = i % 200;
+            Position position = new Position("123456789012345", new Location("gps"), 0);
+            position.setTime(new Date(i * 1000L));
+            position.setLatitude(0.001 * (step <= 100 ? step : 200 - step) / 100);
+            position.setLongitude(i * 0.00001);
+            databaseHelper.insertPosition(position);
+        }
+
+        while (databaseHelper.simplifyBacklog(5));
+
+        assertEquals(988, databaseHelper.getSimplified());
+
+        List<Position> positions = databaseHelper.selectPositions(0, 20);
+        long[] times = {0, 100, 200, 300, 400, 499, 600, 700, 800, 900, 998, 999};
+        assertEquals(times.length, positions.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i] * 1000, positions.get(i).getTime().getTime());
+        }
+
+    }
+
 }
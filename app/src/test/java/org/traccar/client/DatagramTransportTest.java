@@ -0,0 +1,124 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class DatagramTransportTest {
+
+    private static List<Long> ids(long first, int count) {
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < count; i++) {
+            ids.add(first + i);
+        }
+        return ids;
+    }
+
+    private static List<String> queries(int count, int length) {
+        List<String> queries = new ArrayList<String>();
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            query.append('x');
+        }
+        for (int i = 0; i < count; i++) {
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    private static String receive(DatagramSocket socket, DatagramPacket datagram) throws Exception {
+        datagram.setLength(datagram.getData().length);
+        socket.receive(datagram);
+        return new String(datagram.getData(), 0, datagram.getLength(), "UTF-8");
+    }
+
+    private static void ack(DatagramSocket socket, DatagramPacket datagram, long id) throws Exception {
+        byte[] data = (id + "\n").getBytes("UTF-8");
+        socket.send(new DatagramPacket(data, data.length, datagram.getSocketAddress()));
+    }
+
+    @Test
+    public void testPacking() throws Exception {
+
+        DatagramSocket server = new DatagramSocket(0);
+        server.setSoTimeout(5000);
+        DatagramPacket datagram = new DatagramPacket(new byte[2048], 2048);
+
+        final BlockingQueue<Boolean> results = new LinkedBlockingQueue<Boolean>();
+        DatagramTransport transport = new DatagramTransport("127.0.0.1", server.getLocalPort(), false);
+        transport.start();
+
+        transport.send(ids(1, 10), queries(10, 300), new RequestManager.RequestHandler() {
+            @Override
+            public void onComplete(boolean success) {
+                results.add(success);
+            }
+        });
+
+        int lines = 0;
+        while (lines < 10) {
+            String payload = receive(server, datagram);
+            assertTrue(payload.length() <= DatagramTransport.MAX_PAYLOAD);
+            lines += payload.split("\n").length;
+        }
+        assertEquals(10, lines);
+        assertTrue(results.poll(5, TimeUnit.SECONDS));
+        assertEquals(4, transport.getSent());
+
+        transport.stop();
+        server.close();
+
+    }
+
+    @Test
+    public void testResend() throws Exception {
+
+        DatagramSocket server = new DatagramSocket(0);
+        server.setSoTimeout(5000);
+        DatagramPacket datagram = new DatagramPacket(new byte[2048], 2048);
+
+        final BlockingQueue<Boolean> results = new LinkedBlockingQueue<Boolean>();
+        RequestManager.RequestHandler handler = new RequestManager.RequestHandler() {
+            @Override
+            public void onComplete(boolean success) {
+                results.add(success);
+            }
+        };
+        DatagramTransport transport = new DatagramTransport("127.0.0.1", server.getLocalPort(), true, 100);
+        transport.start();
+
+        transport.send(ids(1, 2), queries(2, 10), handler);
+        String payload = receive(server, datagram);
+        assertEquals(payload, receive(server, datagram));
+        ack(server, datagram, 2);
+        assertTrue(results.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, transport.getSent());
+        assertEquals(1, transport.getAcked());
+
+        transport.send(ids(3, 1), queries(1, 10), handler);
+        for (int i = 0; i < DatagramTransport.MAX_ATTEMPTS; i++) {
+            receive(server, datagram);
+        }
+        assertEquals(false, results.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, transport.getLost());
+
+        transport.stop();
+        server.close();
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class HttpTransportTest {
+
+    private static final int TIMEOUT = 1000;
+
+    private static final String CONTENT_LENGTH = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello";
+    private static final String CHUNKED =
+            "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n3;ext=1\r\nabc\r\n0\r\n\r\n";
+    private static final String CLOSE = "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n";
+
+    private static void readRequest(InputStream inputStream) throws IOException {
+        int matched = 0;
+        while (matched < 4) {
+            int value = inputStream.read();
+            if (value == -1) {
+                throw new IOException("Unexpected end of request");
+            }
+            matched = value == "\r\n\r\n".charAt(matched) ? matched + 1 : value == '\r' ? 1 : 0;
+        }
+    }
+
+    private static void respond(Socket socket, String response) throws IOException {
+        readRequest(socket.getInputStream());
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(response.getBytes("ISO-8859-1"));
+        outputStream.flush();
+    }
+
+    private static Thread serve(final ServerSocket serverSocket, final String[][] connections) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (String[] responses : connections) {
+                        Socket socket = serverSocket.accept();
+                        for (String response : responses) {
+                            respond(socket, response);
+                        }
+                        socket.close();
+                    }
+                } catch (IOException error) {
+                    throw new RuntimeException(error);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static int send(ServerSocket serverSocket) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + serverSocket.getLocalPort() + "/?id=1");
+        return HttpTransport.send(url, null, null, null, TIMEOUT);
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        Thread server = serve(serverSocket, new String[][] {{CONTENT_LENGTH, CONTENT_LENGTH}});
+
+        long reuseCount = HttpTransport.getReuseCount();
+        assertEquals(200, send(serverSocket));
+        assertEquals(200, send(serverSocket));
+        assertEquals(reuseCount + 1, HttpTransport.getReuseCount());
+
+        server.join(TIMEOUT);
+        serverSocket.close();
+    }
+
+    @Test
+    public void testChunked() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        Thread server = serve(serverSocket, new String[][] {{CHUNKED, CONTENT_LENGTH}});
+
+        long reuseCount = HttpTransport.getReuseCount();
+        assertEquals(200, send(serverSocket));
+        assertEquals(200, send(serverSocket));
+        assertEquals(reuseCount + 1, HttpTransport.getReuseCount());
+
+        server.join(TIMEOUT);
+        serverSocket.close();
+    }
+
+    @Test
+    public void testConnectionClose() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        Thread server = serve(serverSocket, new String[][] {{CLOSE}, {CONTENT_LENGTH}});
+
+        long handshakeCount = HttpTransport.getHandshakeCount();
+        long reuseCount = HttpTransport.getReuseCount();
+        assertEquals(200, send(serverSocket));
+        assertEquals(200, send(serverSocket));
+        assertEquals(handshakeCount + 2, HttpTransport.getHandshakeCount());
+        assertEquals(reuseCount, HttpTransport.getReuseCount());
+
+        server.join(TIMEOUT);
+        serverSocket.close();
+    }
+
+    @Test
+    public void testStaleReuse() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        Thread server = serve(serverSocket, new String[][] {{CONTENT_LENGTH}});
+
+        long handshakeCount = HttpTransport.getHandshakeCount();
+        assertEquals(200, send(serverSocket));
+        server.join(TIMEOUT);
+        server = serve(serverSocket, new String[][] {{CONTENT_LENGTH}});
+        assertEquals(200, send(serverSocket));
+        assertEquals(handshakeCount + 2, HttpTransport.getHandshakeCount());
+
+        server.join(TIMEOUT);
+        serverSocket.close();
+    }
+
+    @Test
+    public void testNoRetryAfterRequestSent() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    respond(socket, CONTENT_LENGTH);
+                    readRequest(socket.getInputStream());
+                    Thread.sleep(TIMEOUT + 1000);
+                    socket.close();
+                } catch (IOException | InterruptedException error) {
+                    throw new RuntimeException(error);
+                }
+            }
+        });
+        server.start();
+
+        assertEquals(200, send(serverSocket));
+        long handshakeCount = HttpTransport.getHandshakeCount();
+        boolean timeout = false;
+        try {
+            send(serverSocket);
+        } catch (SocketTimeoutException error) {
+            timeout = true;
+        }
+        assertTrue(timeout);
+        assertEquals(handshakeCount, HttpTransport.getHandshakeCount());
+
+        server.join();
+        serverSocket.close();
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class KalmanFilterTest {
+
+    @Test
+    public void testSmoothing() throws Exception {
+
+        KalmanFilter kalmanFilter = new KalmanFilter();
+        Random random = new Random(1);
+
+        double filteredError = 0;
+        double rawError = 0;
+        for (int i = 0; i < 120; i++) {
+            double distance = i * 10;
+            double measured = distance + random.nextGaussian() * 10;
+            assertTrue(kalmanFilter.update(i * 1000, 0, Math.toDegrees(measured / 6371000), 10));
+            if (i >= 20) {
+                filteredError += Math.abs(Math.toRadians(kalmanFilter.getLongitude()) * 6371000 - distance);
+                rawError += Math.abs(measured - distance);
+            }
+        }
+
+        assertTrue(filteredError < rawError);
+
+    }
+
+    @Test
+    public void testOutlier() throws Exception {
+
+        KalmanFilter kalmanFilter = new KalmanFilter();
+
+        assertTrue(kalmanFilter.update(0, 0, 0, 10));
+        assertTrue(kalmanFilter.update(1000, 0, 0.0001, 10));
+        assertFalse(kalmanFilter.update(2000, 0.01, 0.0001, 10));
+        assertTrue(kalmanFilter.update(3000, 0, 0.0002, 10));
+
+        for (int i = 1; i < KalmanFilter.MAX_REJECTIONS; i++) {
+            assertFalse(kalmanFilter.update(3000 + i * 1000, 1, 0, 10));
+        }
+        assertTrue(kalmanFilter.update(3000 + KalmanFilter.MAX_REJECTIONS * 1000, 1, 0, 10));
+        assertEquals(1, kalmanFilter.getLatitude(), 0.000001);
+
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.traccar.client;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class LocationFilterTest {
+
+    private static Location createLocation(long time, double longitude, float bearing, float accuracy) {
+        Location location = new Location("gps");
+        location.setTime(time);
+        location.setLongitude(longitude);
+        location.setBearing(bearing);
+        location.setAccuracy(accuracy);
+        return location;
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+
+        LocationFilter filter = new LocationFilter(100, 30, 600 * 1000, 50);
+
+        assertTrue(filter.accept(createLocation(0, 0.0, 90, 10)));
+        assertFalse(filter.accept(createLocation(10 * 1000, 0.0001, 90, 10)));
+        assertTrue(filter.accept(createLocation(20 * 1000, 0.002, 90, 10)));
+        assertFalse(filter.accept(createLocation(30 * 1000, 0.004, 90, 100)));
+        assertTrue(filter.accept(createLocation(40 * 1000, 0.0021, 180, 10)));
+        assertFalse(filter.accept(createLocation(50 * 1000, 0.0022, 170, 10)));
+        assertTrue(filter.accept(createLocation(700 * 1000, 0.0022, 170, 10)));
+
+    }
+
+}
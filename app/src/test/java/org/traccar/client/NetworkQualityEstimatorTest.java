@@ -0,0 +1,52 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class NetworkQualityEstimatorTest {
+
+    @Test
+    public void testAimd() throws Exception {
+
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator(20);
+
+        assertEquals(1, estimator.getBatchSize());
+
+        for (int i = 0; i < 30; i++) {
+            estimator.onSuccess(10, 1000, 100);
+        }
+        assertEquals(20, estimator.getBatchSize());
+
+        estimator.onFailure();
+        assertEquals(10, estimator.getBatchSize());
+        estimator.onFailure();
+        assertEquals(5, estimator.getBatchSize());
+        assertTrue(estimator.getFailureRate() > 0);
+
+        estimator.onSuccess(5, 500, 100);
+        assertEquals(6, estimator.getBatchSize());
+
+    }
+
+    @Test
+    public void testThroughputLimit() throws Exception {
+
+        NetworkQualityEstimator estimator = new NetworkQualityEstimator(100);
+
+        for (int i = 0; i < 100; i++) {
+            estimator.onSuccess(10, 1000, 5000);
+        }
+
+        assertEquals(200, (long) estimator.getThroughput());
+        assertEquals(20, estimator.getBatchSize());
+
+    }
+
+}
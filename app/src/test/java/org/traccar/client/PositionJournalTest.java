@@ -0,0 +1,126 @@
+package org.traccar.client;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PositionJournalTest {
+
+    private static List<Position> createPositions(int count) {
+        List<Position> positions = new ArrayList<Position>();
+        for (int i = 0; i < count; i++) {
+            Position position = new Position("123456789012345", new Location("gps"), 0);
+            position.setTime(new Date(i * 1000L));
+            position.setLatitude(i * 0.0001);
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    private static List<Long> getIds(List<Position> positions) {
+        List<Long> ids = new ArrayList<Long>();
+        for (Position position : positions) {
+            ids.add(position.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void test() throws Exception {
+
+        File directory = new File(RuntimeEnvironment.application.getFilesDir(), "journal-test");
+
+        PositionJournal journal = new PositionJournal(directory);
+
+        assertTrue(journal.selectPositions(0, 10).isEmpty());
+
+        int count = PositionJournal.RECORDS_PER_SEGMENT + 10;
+        journal.insertPositions(createPositions(count));
+
+        assertEquals(count, journal.getSize());
+
+        List<Position> positions = journal.selectPositions(0, PositionJournal.RECORDS_PER_SEGMENT);
+
+        assertEquals(PositionJournal.RECORDS_PER_SEGMENT, positions.size());
+        assertEquals("123456789012345", positions.get(0).getDeviceId());
+        assertEquals(1000L, positions.get(1).getTime().getTime());
+        assertEquals(0.0001, positions.get(1).getLatitude(), 0.0);
+
+        journal.deletePositions(Arrays.asList(positions.get(1).getId()));
+
+        assertEquals(count - 1, journal.getSize());
+
+        journal.deletePositions(getIds(positions));
+
+        assertEquals(count - PositionJournal.RECORDS_PER_SEGMENT, journal.getSize());
+
+        journal = new PositionJournal(directory);
+
+        positions = journal.selectPositions(0, count);
+
+        assertEquals(count - PositionJournal.RECORDS_PER_SEGMENT, positions.size());
+        assertEquals(PositionJournal.RECORDS_PER_SEGMENT * 1000L, positions.get(0).getTime().getTime());
+
+        journal.deletePositions(getIds(positions));
+
+        assertEquals(0, journal.getSize());
+
+        journal = new PositionJournal(directory);
+
+        assertEquals(0, journal.getSize());
+
+        journal.insertPositions(createPositions(1));
+
+        assertEquals(1, journal.selectPositions(0, 10).size());
+
+    }
+
+    @Test
+    public void testLongDeviceId() throws Exception {
+
+        File directory = new File(RuntimeEnvironment.application.getFilesDir(), "journal-long-test");
+
+        PositionJournal journal = new PositionJournal(directory);
+
+        assertTrue(PositionJournal.isDeviceIdSupported("123456789012345"));
+        assertFalse(PositionJournal.isDeviceIdSupported("1234567890123456789012345678"));
+
+        List<Position> positions = createPositions(3);
+        positions.get(2).setDeviceId("1234567890123456789012345678");
+        boolean failed = false;
+        try {
+            journal.insertPositions(positions);
+        } catch (IllegalArgumentException error) {
+            failed = true;
+        }
+        assertTrue(failed);
+        assertEquals(0, journal.getSize());
+
+        journal.insertPositions(createPositions(2));
+
+        journal = new PositionJournal(directory);
+
+        positions = journal.selectPositions(0, 10);
+
+        assertEquals(2, positions.size());
+        assertEquals(1, positions.get(0).getId());
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.traccar.client;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class QueryFormatterTest {
+
+    @Test
+    public void testFormatRequest() throws Exception {
+
+        Position position = new Position("123456789012345", new Location("gps"), 0);
+        position.setTime(new Date(0));
+
+        QueryFormatter formatter = new QueryFormatter("localhost", 5055);
+
+        assertEquals(ProtocolFormatter.formatRequest("localhost", 5055, position), formatter.formatRequest(position));
+
+        position = new Position("device 1/\u00fc", new Location("gps"), 87.5);
+        position.setTime(new Date(1445000000000L));
+        position.setLatitude(55.75);
+        position.setLongitude(-37.617);
+        position.setSpeed(12.5);
+        position.setCourse(270);
+        position.setAltitude(-12.25);
+
+        assertEquals(ProtocolFormatter.formatRequest("localhost", 5055, position), formatter.formatRequest(position));
+
+    }
+
+    @Test
+    public void testFormatBatchRequest() throws Exception {
+
+        Position first = new Position("123456789012345", new Location("gps"), 0);
+        first.setTime(new Date(0));
+
+        Position second = new Position("123456789012345", new Location("gps"), 0);
+        second.setTime(new Date(1000));
+
+        QueryFormatter formatter = new QueryFormatter("localhost", 5055);
+
+        String body = formatter.formatBatchRequest(Arrays.asList(first, second));
+
+        assertEquals("id=123456789012345&timestamp=0&lat=0.0&lon=0.0&speed=0.0&bearing=0.0&altitude=0.0&batt=0.0\n" +
+                "id=123456789012345&timestamp=1&lat=0.0&lon=0.0&speed=0.0&bearing=0.0&altitude=0.0&batt=0.0", body);
+
+    }
+
+    @Test
+    public void testAppendFixed() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+        QueryFormatter.appendFixed(builder, 1.000005, 6);
+        builder.append(' ');
+        QueryFormatter.appendFixed(builder, -0.1234567, 6);
+        builder.append(' ');
+        QueryFormatter.appendFixed(builder, 99.999, 2);
+
+        assertEquals("1.000005 -0.123457 100.0", builder.toString());
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class RetryPolicyTest {
+
+    @Test
+    public void testBackoff() throws Exception {
+
+        RetryPolicy retryPolicy = new RetryPolicy(new Random(1));
+
+        long previous = 0;
+        for (int i = 1; i < RetryPolicy.FAILURE_THRESHOLD; i++) {
+            retryPolicy.onFailure();
+            long delay = retryPolicy.getDelay();
+            long base = Math.min(RetryPolicy.MIN_DELAY << (i - 1), RetryPolicy.MAX_DELAY);
+            assertTrue(delay >= base / 2 && delay <= base);
+            assertTrue(delay >= previous / 2);
+            previous = delay;
+        }
+
+        assertFalse(retryPolicy.isOpen());
+
+        retryPolicy.onFailure();
+
+        assertTrue(retryPolicy.isOpen());
+        assertEquals(RetryPolicy.OPEN_DELAY, retryPolicy.getDelay());
+
+        retryPolicy.reset();
+
+        assertFalse(retryPolicy.isOpen());
+        assertTrue(retryPolicy.getDelay() <= RetryPolicy.MIN_DELAY);
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class StreamTransportTest {
+
+    @Test
+    public void testResend() throws Exception {
+
+        ServerSocket serverSocket = new ServerSocket(0);
+        serverSocket.setSoTimeout(5000);
+
+        final BlockingQueue<Long> acks = new LinkedBlockingQueue<Long>();
+        StreamTransport transport = new StreamTransport(
+                "127.0.0.1", serverSocket.getLocalPort(), new StreamTransport.Listener() {
+            @Override
+            public void onAck(long sequence) {
+                acks.add(sequence);
+            }
+        }, new RetryPolicy(new Random(), 10, 100));
+        transport.start();
+
+        transport.send(1, "a");
+        transport.send(2, "b");
+        transport.send(3, "c");
+
+        Socket socket = serverSocket.accept();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        assertEquals("1 a", reader.readLine());
+        assertEquals("2 b", reader.readLine());
+        assertEquals("3 c", reader.readLine());
+        socket.close();
+
+        socket = serverSocket.accept();
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        OutputStream writer = socket.getOutputStream();
+        assertEquals("1 a", reader.readLine());
+        assertEquals("2 b", reader.readLine());
+        assertEquals("3 c", reader.readLine());
+
+        writer.write("2\n".getBytes("UTF-8"));
+        writer.flush();
+        assertEquals(2L, (long) acks.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, transport.getPending());
+
+        transport.send(4, "d");
+        assertEquals("4 d", reader.readLine());
+
+        writer.write("4\n".getBytes("UTF-8"));
+        writer.flush();
+        assertEquals(4L, (long) acks.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, transport.getPending());
+
+        assertEquals(5, transport.send(10, "live"));
+        assertEquals(6, transport.send(5, "e"));
+        assertEquals("10 live", reader.readLine());
+        assertEquals("5 e", reader.readLine());
+
+        writer.write("10\n".getBytes("UTF-8"));
+        writer.flush();
+        assertEquals(5L, (long) acks.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, transport.getPending());
+
+        writer.write("5\n".getBytes("UTF-8"));
+        writer.flush();
+        assertEquals(6L, (long) acks.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, transport.getPending());
+
+        transport.stop();
+        socket.close();
+        serverSocket.close();
+
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+
+        ServerSocket serverSocket = new ServerSocket(0);
+        serverSocket.setSoTimeout(5000);
+
+        final BlockingQueue<Long> acks = new LinkedBlockingQueue<Long>();
+        StreamTransport transport = new StreamTransport(
+                "127.0.0.1", serverSocket.getLocalPort(), new StreamTransport.Listener() {
+            @Override
+            public void onAck(long sequence) {
+                acks.add(sequence);
+            }
+        }, new RetryPolicy(new Random(), 60000, 60000));
+        transport.start();
+
+        transport.send(1, "a");
+
+        Socket socket = serverSocket.accept();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        assertEquals("1 a", reader.readLine());
+        socket.close();
+
+        Thread.sleep(500);
+        transport.reconnect();
+
+        socket = serverSocket.accept();
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        OutputStream writer = socket.getOutputStream();
+        assertEquals("1 a", reader.readLine());
+
+        writer.write("1\n".getBytes("UTF-8"));
+        writer.flush();
+        assertEquals(1L, (long) acks.poll(5, TimeUnit.SECONDS));
+        socket.close();
+
+        Thread.sleep(500);
+        transport.send(2, "b");
+
+        socket = serverSocket.accept();
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        assertEquals("2 b", reader.readLine());
+
+        transport.stop();
+        socket.close();
+        serverSocket.close();
+
+    }
+
+}
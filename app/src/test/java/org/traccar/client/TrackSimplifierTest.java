@@ -0,0 +1,60 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TrackSimplifierTest {
+
+    @Test
+    public void testStraightLine() throws Exception {
+
+        TrackSimplifier simplifier = new TrackSimplifier(100);
+        for (int i = 0; i < 100; i++) {
+            simplifier.add(i * 1000, 0.0, i * 0.0001);
+        }
+
+        assertTrue(simplifier.isFull());
+        assertEquals(2, simplifier.simplify(5));
+        assertTrue(simplifier.isKept(0));
+        assertFalse(simplifier.isKept(50));
+        assertTrue(simplifier.isKept(99));
+
+    }
+
+    @Test
+    public void testCorner() throws Exception {
+
+        TrackSimplifier simplifier = new TrackSimplifier(100);
+        for (int i = 0; i < 50; i++) {
+            simplifier.add(i * 1000, 0.0, i * 0.0001);
+        }
+        for (int i = 0; i < 50; i++) {
+            simplifier.add((50 + i) * 1000, i * 0.0001, 0.005);
+        }
+
+        assertEquals(3, simplifier.simplify(5));
+        assertTrue(simplifier.isKept(49) || simplifier.isKept(50));
+
+    }
+
+    @Test
+    public void testStop() throws Exception {
+
+        TrackSimplifier simplifier = new TrackSimplifier(3);
+        simplifier.add(0, 0.0, 0.0);
+        simplifier.add(90000, 0.0, 0.0);
+        simplifier.add(100000, 0.0, 0.001);
+
+        assertEquals(3, simplifier.simplify(5));
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.traccar.client;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class UploadSchedulerTest {
+
+    @Test
+    public void testPolicy() throws Exception {
+
+        UploadScheduler uploadScheduler = new UploadScheduler(UploadScheduler.POLICY_EITHER, 100, 0);
+
+        assertTrue(uploadScheduler.isAllowed(10, true, false, 0));
+        assertFalse(uploadScheduler.isAllowed(100, true, false, 0));
+        assertTrue(uploadScheduler.isAllowed(100, false, false, 0));
+        assertTrue(uploadScheduler.isAllowed(100, true, true, 0));
+
+        uploadScheduler = new UploadScheduler(UploadScheduler.POLICY_BOTH, 100, 0);
+
+        assertFalse(uploadScheduler.isAllowed(100, false, false, 0));
+        assertTrue(uploadScheduler.isAllowed(100, false, true, 0));
+
+    }
+
+    @Test
+    public void testMaxDeferral() throws Exception {
+
+        UploadScheduler uploadScheduler = new UploadScheduler(UploadScheduler.POLICY_UNMETERED, 100, 1000);
+
+        assertFalse(uploadScheduler.isAllowed(200, true, false, 5000));
+        assertFalse(uploadScheduler.isAllowed(200, true, false, 5500));
+        assertTrue(uploadScheduler.isAllowed(200, true, false, 6000));
+        assertTrue(uploadScheduler.isAllowed(150, true, false, 7000));
+
+        assertTrue(uploadScheduler.isAllowed(50, true, false, 8000));
+        assertFalse(uploadScheduler.isAllowed(200, true, false, 9000));
+
+    }
+
+}